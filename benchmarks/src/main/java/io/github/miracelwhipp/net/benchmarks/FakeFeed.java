@@ -0,0 +1,255 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an in-process nuget flat container serving generated packages. The packages form a dependency graph
+ * without cycles: every package depends on up to three packages with a higher number, so the packages with low
+ * numbers are the roots of the largest trees. The feed delays every response by a fixed latency and limits the
+ * bandwidth of each response, and it counts the requests it answered and the bytes it sent.
+ *
+ * @author miracelwhipp
+ */
+public class FakeFeed implements AutoCloseable {
+
+	public static final String VERSION = "1.0.0";
+
+	private static final String[] FRAMEWORKS = {"net45", "netstandard2.0"};
+
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final List<String> ids = new ArrayList<>();
+	private final Map<String, List<String>> dependencies = new HashMap<>();
+	private final Map<String, byte[]> resources = new HashMap<>();
+
+	private final long latencyMillis;
+	private final long bytesPerSecond;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+
+	/**
+	 * This constructor generates the packages and starts the feed on a free port of the loopback interface.
+	 *
+	 * @param packages            the number of packages
+	 * @param librarySize         the size of the dlls of each package in bytes
+	 * @param latencyMillis       the delay of each response
+	 * @param kilobytesPerSecond  the bandwidth of each response or 0 for no limit
+	 * @throws IOException if the server cannot be started
+	 */
+	public FakeFeed(int packages, int librarySize, long latencyMillis, long kilobytesPerSecond) throws IOException {
+
+		this.latencyMillis = latencyMillis;
+		this.bytesPerSecond = kilobytesPerSecond * 1024;
+
+		generate(packages, librarySize);
+
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	private void generate(int packages, int librarySize) throws IOException {
+
+		Random random = new Random(packages);
+
+		for (int index = 0; index < packages; index++) {
+
+			ids.add(String.format(Locale.ENGLISH, "Sample.Package%03d", index));
+		}
+
+		File directory = Files.createTempDirectory("fake-feed").toFile();
+
+		try {
+
+			for (int index = 0; index < packages; index++) {
+
+				String id = ids.get(index);
+				List<String> packageDependencies = new ArrayList<>();
+
+				int count = random.nextInt(4);
+
+				for (int dependency = 0; dependency < count && index + 1 < packages; dependency++) {
+
+					String dependencyId = ids.get(index + 1 + random.nextInt(Math.min(40, packages - index - 1)));
+
+					if (!packageDependencies.contains(dependencyId)) {
+
+						packageDependencies.add(dependencyId);
+					}
+				}
+
+				dependencies.put(id, Collections.unmodifiableList(packageDependencies));
+
+				File packageFile = new File(directory, id + ".nupkg");
+
+				SamplePackages.write(packageFile, id, VERSION, FRAMEWORKS, librarySize, packageDependencies);
+
+				byte[] content = Files.readAllBytes(packageFile.toPath());
+
+				String lowerId = id.toLowerCase(Locale.ENGLISH);
+				String prefix = "/" + lowerId + "/" + VERSION + "/" + lowerId + "." + VERSION;
+
+				resources.put(prefix + ".nupkg", content);
+				resources.put(prefix + ".nupkg.sha512", Base64.getEncoder().encode(MessageDigest.getInstance("SHA-512").digest(content)));
+				resources.put("/" + lowerId + "/" + VERSION + "/" + lowerId + ".nuspec",
+						SamplePackages.nuspec(id, VERSION, FRAMEWORKS, packageDependencies).getBytes(StandardCharsets.UTF_8));
+
+				ByteArrayOutputStream versionIndex = new ByteArrayOutputStream();
+				SamplePackages.writeIndex(versionIndex, 1);
+				resources.put("/" + lowerId + "/index.json", versionIndex.toByteArray());
+
+				if (!packageFile.delete()) {
+
+					throw new IOException("unable to delete " + packageFile.getAbsolutePath());
+				}
+			}
+
+		} catch (NoSuchAlgorithmException e) {
+
+			throw new IllegalStateException(e);
+
+		} finally {
+
+			Files.deleteIfExists(directory.toPath());
+		}
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+
+		requests.incrementAndGet();
+
+		try {
+
+			if (latencyMillis > 0) {
+
+				Thread.sleep(latencyMillis);
+			}
+
+			byte[] content = resources.get(exchange.getRequestURI().getPath());
+
+			if (content == null) {
+
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			if (exchange.getRequestMethod().equals("HEAD")) {
+
+				exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+
+			exchange.sendResponseHeaders(200, content.length);
+
+			long start = System.nanoTime();
+
+			try (OutputStream target = exchange.getResponseBody()) {
+
+				for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+
+					int length = Math.min(CHUNK_SIZE, content.length - offset);
+
+					if (bytesPerSecond > 0) {
+
+						// the time the bytes sent so far may take at the given bandwidth.
+						long due = start + TimeUnit.SECONDS.toNanos(offset) / bytesPerSecond;
+
+						TimeUnit.NANOSECONDS.sleep(due - System.nanoTime());
+					}
+
+					target.write(content, offset, length);
+					bytes.addAndGet(length);
+				}
+			}
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+
+		} finally {
+
+			exchange.close();
+		}
+	}
+
+	/**
+	 * This method returns the url of the flat container.
+	 *
+	 * @return the url ending with a slash
+	 */
+	public String getUrl() {
+
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * This method returns the ids of all packages, ordered such that every package depends only on later ones.
+	 */
+	public List<String> getIds() {
+
+		return Collections.unmodifiableList(ids);
+	}
+
+	/**
+	 * This method returns the ids of the packages the given package depends on.
+	 */
+	public List<String> getDependencies(String id) {
+
+		return dependencies.get(id);
+	}
+
+	public long getRequests() {
+
+		return requests.get();
+	}
+
+	public long getBytes() {
+
+		return bytes.get();
+	}
+
+	@Override
+	public void close() {
+
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
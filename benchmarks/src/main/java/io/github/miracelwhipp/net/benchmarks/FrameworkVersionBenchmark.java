@@ -0,0 +1,147 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.provider.FrameworkVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This benchmark parses the library folder names of a typical package, looks the resulting versions up in a hash map
+ * and checks their compatibility with each other. The regex baseline is the pattern
+ * {@link FrameworkVersion#fromShortName(String)} used before it was replaced by a hand written parser. Run it with
+ * {@code -prof gc} to compare their allocation rates.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameworkVersionBenchmark {
+
+	private static final Pattern VERSION_PATTERN =
+			Pattern.compile("(?<abbreviation>[a-zA-Z]*)" +
+					"(?:(?<longMajor>[0-9]+)\\.|(?<shortMajor>[0-9]))" +
+					"(?:(?<longMinor>[0-9]+)\\.|(?<shortMinor>[0-9]))" +
+					"(?:(?<longPatch>[0-9]+)\\.|(?<shortPatch>[0-9]))?(-(?<identifier>[0-9A-Za-z]+))*");
+
+	private static final String[] FOLDER_NAMES = {
+			"net20", "net35", "net40", "net45", "net461", "net472", "net48",
+			"netstandard1.0", "netstandard1.3", "netstandard2.0", "netstandard2.1",
+			"netcoreapp2.1", "netcoreapp3.1", "net5.0", "net6.0", "net6.0-windows", "net7.0", "net8.0"
+	};
+
+	private FrameworkVersion[] keys;
+	private Map<FrameworkVersion, String> folders;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		keys = new FrameworkVersion[FOLDER_NAMES.length];
+		folders = new HashMap<>();
+
+		for (int index = 0; index < FOLDER_NAMES.length; index++) {
+
+			keys[index] = FrameworkVersion.fromShortName(FOLDER_NAMES[index]);
+			folders.put(keys[index], FOLDER_NAMES[index]);
+		}
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+
+		for (String folderName : FOLDER_NAMES) {
+
+			blackhole.consume(FrameworkVersion.fromShortName(folderName));
+		}
+	}
+
+	@Benchmark
+	public void parseRegex(Blackhole blackhole) {
+
+		for (String folderName : FOLDER_NAMES) {
+
+			blackhole.consume(regex(folderName));
+		}
+	}
+
+	@Benchmark
+	public void lookup(Blackhole blackhole) {
+
+		for (FrameworkVersion key : keys) {
+
+			blackhole.consume(folders.get(key));
+		}
+	}
+
+	@Benchmark
+	public int downwardsCompatible() {
+
+		int result = 0;
+
+		for (FrameworkVersion project : keys) {
+
+			for (FrameworkVersion candidate : keys) {
+
+				if (project.isDownwardsCompatible(candidate)) {
+
+					result++;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public void parseAndLookup(Blackhole blackhole) {
+
+		for (String folderName : FOLDER_NAMES) {
+
+			blackhole.consume(folders.get(FrameworkVersion.fromShortName(folderName)));
+		}
+	}
+
+	private static FrameworkVersion regex(String value) {
+
+		Matcher matcher = VERSION_PATTERN.matcher(value);
+
+		if (!matcher.matches()) {
+
+			return null;
+		}
+
+		String abbreviation = matcher.group("abbreviation");
+
+		return FrameworkVersion.newInstance(null, abbreviation, argument(matcher, "Major"), argument(matcher, "Minor"), argument(matcher, "Patch"));
+	}
+
+	private static int argument(Matcher matcher, String name) {
+
+		String result = matcher.group("long" + name);
+
+		if (result == null) {
+
+			result = matcher.group("short" + name);
+		}
+
+		return result == null ? 0 : Integer.parseInt(result);
+	}
+}
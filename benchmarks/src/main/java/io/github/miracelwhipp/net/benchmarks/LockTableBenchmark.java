@@ -0,0 +1,80 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.common.LockTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark stresses the {@link LockTable} with eight threads locking a few keys - all threads wait for the same
+ * package - or many keys - every thread works on its own package. Each lock is held for a short piece of work.
+ * <p>
+ * It also checks the table: when a trial ends, every entry must have been removed again.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LockTableBenchmark {
+
+	@Param({"1", "4", "1024"})
+	public int keys;
+
+	@Param({"50"})
+	public int work;
+
+	private LockTable table;
+	private String[] keyNames;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		table = new LockTable();
+		keyNames = new String[keys];
+
+		for (int index = 0; index < keys; index++) {
+
+			keyNames[index] = "sample.library." + index + "/1.0.0/sample.library." + index + ".1.0.0.nupkg";
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		if (table.size() != 0) {
+
+			throw new IllegalStateException("lock table still holds " + table.size() + " entries.");
+		}
+	}
+
+	@Benchmark
+	public void lock() {
+
+		String key = keyNames[ThreadLocalRandom.current().nextInt(keyNames.length)];
+
+		try (LockTable.Lock ignored = table.lock(key)) {
+
+			Blackhole.consumeCPU(work);
+		}
+	}
+}
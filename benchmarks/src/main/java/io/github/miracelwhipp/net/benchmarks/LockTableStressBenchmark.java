@@ -0,0 +1,153 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.common.LockTable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This benchmark runs eight threads through 100000 distinct keys of one {@link LockTable}, each thread in an order of
+ * its own, so threads meet on some keys and pass each other on most. It reports the locks taken, how many of them
+ * took a microsecond or longer and the time spent acquiring them, pauses of the garbage collector included.
+ * <p>
+ * It also checks that the table does not grow: while the threads run it never holds more entries than there are
+ * threads, and after every iteration all entries have been removed again.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(LockTableStressBenchmark.THREADS)
+@Fork(1)
+public class LockTableStressBenchmark {
+
+	static final int THREADS = 8;
+
+	private static final int SAMPLE_INTERVAL = 64;
+
+	private static final int[] STRIDES = {1, 3, 7, 9, 11, 13, 17, 19};
+
+	@Param({"100000"})
+	public int keys;
+
+	@Param({"20"})
+	public int work;
+
+	private LockTable table;
+	private String[] keyNames;
+
+	private final AtomicInteger peakEntries = new AtomicInteger();
+
+	/**
+	 * This class holds the numbers reported besides the wall time.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Waits {
+
+		public long locks;
+		public long contended;
+		public long waitMicros;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+
+			locks = 0;
+			contended = 0;
+			waitMicros = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		table = new LockTable();
+		keyNames = new String[keys];
+
+		for (int index = 0; index < keys; index++) {
+
+			keyNames[index] = "sample.library." + index + "/1.0.0/sample.library." + index + ".1.0.0.nupkg";
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void checkTable() {
+
+		if (table.size() != 0) {
+
+			throw new IllegalStateException("lock table still holds " + table.size() + " entries.");
+		}
+
+		if (peakEntries.get() > THREADS) {
+
+			throw new IllegalStateException("lock table held " + peakEntries.get() + " entries for " + THREADS + " threads.");
+		}
+	}
+
+	@Benchmark
+	public void lockAllKeys(ThreadParams threadParams, Waits waits) {
+
+		int thread = threadParams.getThreadIndex();
+		int stride = STRIDES[thread % STRIDES.length];
+		int start = (int) ((long) keys * thread / THREADS);
+
+		for (int step = 0; step < keys; step++) {
+
+			String key = keyNames[(int) ((start + (long) step * stride) % keys)];
+
+			long waitStart = System.nanoTime();
+
+			try (LockTable.Lock ignored = table.lock(key)) {
+
+				long waited = System.nanoTime() - waitStart;
+
+				// an uncontended lock takes well below a microsecond.
+				if (waited >= TimeUnit.MICROSECONDS.toNanos(1)) {
+
+					waits.contended++;
+				}
+
+				waits.waitMicros += TimeUnit.NANOSECONDS.toMicros(waited);
+				waits.locks++;
+
+				if (step % SAMPLE_INTERVAL == 0) {
+
+					samplePeak();
+				}
+
+				Blackhole.consumeCPU(work);
+			}
+		}
+	}
+
+	private void samplePeak() {
+
+		int size = table.size();
+		int peak = peakEntries.get();
+
+		while (size > peak && !peakEntries.compareAndSet(peak, size)) {
+
+			peak = peakEntries.get();
+		}
+	}
+}
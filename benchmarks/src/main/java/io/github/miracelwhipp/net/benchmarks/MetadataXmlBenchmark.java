@@ -0,0 +1,72 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.nuget.plugin.MetadataXmlWriter;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark converts generated index.json files to maven-metadata.xml, as the wagon does for every metadata
+ * request. Packages like the base class library ones list thousands of versions.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataXmlBenchmark {
+
+	@Param({"50", "5000"})
+	public int versions;
+
+	private File directory;
+	private File index;
+	private File metadata;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		directory = Files.createTempDirectory("metadata-benchmark").toFile();
+		index = new File(directory, "index.json");
+		metadata = new File(directory, "maven-metadata.xml");
+
+		try (OutputStream target = new FileOutputStream(index)) {
+
+			SamplePackages.writeIndex(target, versions);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public File write() throws Exception {
+
+		MetadataXmlWriter.write(index, metadata, "Sample.Library", "Sample.Library");
+
+		return metadata;
+	}
+}
@@ -0,0 +1,99 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.common.Xml;
+import io.github.miracelwhipp.net.nuget.plugin.NuspecToPomConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares the engines converting a nuspec file to a pom. Run it with {@code -prof gc} to compare
+ * their allocation rates.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NuspecToPomBenchmark {
+
+	@Param({".NETStandard2.0", ".NETFramework4.5"})
+	public String targetFramework;
+
+	private File directory;
+	private File nuspec;
+	private File pom;
+
+	private Templates templates;
+	private Xml.ParameterSetter parameterSetter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		directory = Files.createTempDirectory("nuspec-benchmark").toFile();
+		nuspec = new File(directory, "sample.nuspec");
+		pom = new File(directory, "sample.pom");
+
+		try (InputStream source = NuspecToPomBenchmark.class.getResourceAsStream("/sample.nuspec")) {
+
+			Files.copy(source, nuspec.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		URL styleSheet = NuspecToPomConverter.class.getResource("/nuspec-to-pom.xsl");
+
+		templates = Xml.getTemplates(styleSheet);
+
+		parameterSetter = new Xml.ParameterSetter() {
+			@Override
+			public void setParameters(Transformer transformer) {
+				transformer.setParameter("targetFramework", targetFramework);
+			}
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+
+		Files.deleteIfExists(pom.toPath());
+		Files.deleteIfExists(nuspec.toPath());
+		Files.deleteIfExists(directory.toPath());
+	}
+
+	@Benchmark
+	public File xslt() throws Exception {
+
+		Xml.transformFile(nuspec, templates, pom, false, parameterSetter);
+
+		return pom;
+	}
+
+	@Benchmark
+	public File stax() throws Exception {
+
+		NuspecToPomConverter.convert(nuspec, pom, targetFramework);
+
+		return pom;
+	}
+}
@@ -0,0 +1,322 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.ContainerConfiguration;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusConstants;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark resolves the dependencies of a reactor against a {@link FakeFeed} with the nuget wagon, end to end
+ * and without network access. Each invocation is one build: a new plexus container and maven session, with the
+ * modules of the reactor resolved by {@code threads} threads like {@code mvn -T threads}.
+ * <p>
+ * Like maven, the benchmark asks the wagon only for files missing in the local repository, and for their sha1
+ * checksum. With a {@code cold} cache every build starts with an empty local repository. With a {@code warm} cache
+ * the packages downloaded and unpacked by an earlier build are kept and only the poms and dlls are missing. Besides
+ * the wall time of the build, the number of requests the feed answered and the kilobytes it sent are reported.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+// the http server of the jdk waits for delayed acknowledgements of small responses otherwise.
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ResolveBenchmark {
+
+	private static final int MODULES = 16;
+
+	@Param({"300"})
+	public int packages;
+
+	@Param({"65536"})
+	public int librarySize;
+
+	@Param({"5"})
+	public long latencyMillis;
+
+	@Param({"0"})
+	public long kilobytesPerSecond;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	@Param({"cold", "warm"})
+	public String cache;
+
+	private FakeFeed feed;
+	private File localRepository;
+	private ExecutorService executor;
+	private List<List<String>> modules;
+
+	private DefaultPlexusContainer container;
+	private Wagon wagon;
+
+	private long requestsBefore;
+	private long bytesBefore;
+
+	/**
+	 * This class holds the numbers reported besides the wall time.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Traffic {
+
+		public long requests;
+		public long kilobytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+
+			requests = 0;
+			kilobytes = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		feed = new FakeFeed(packages, librarySize, latencyMillis, kilobytesPerSecond);
+		localRepository = Files.createTempDirectory("resolve-benchmark").toFile();
+		executor = Executors.newFixedThreadPool(threads);
+		modules = modules(feed);
+
+		if (cache.equals("warm")) {
+
+			startBuild();
+			build();
+			stopBuild();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+
+		executor.shutdownNow();
+		feed.close();
+		FileUtils.deleteDirectory(localRepository);
+	}
+
+	@Setup(Level.Invocation)
+	public void prepareBuild() throws Exception {
+
+		if (cache.equals("cold")) {
+
+			FileUtils.cleanDirectory(localRepository);
+
+		} else {
+
+			for (String id : feed.getIds()) {
+
+				Files.deleteIfExists(new File(localRepository, resourceName(id, "pom")).toPath());
+				Files.deleteIfExists(new File(localRepository, resourceName(id, "dll")).toPath());
+			}
+		}
+
+		startBuild();
+
+		requestsBefore = feed.getRequests();
+		bytesBefore = feed.getBytes();
+	}
+
+	@TearDown(Level.Invocation)
+	public void finishBuild() throws Exception {
+
+		stopBuild();
+	}
+
+	@Benchmark
+	public void resolve(Traffic traffic) throws Exception {
+
+		build();
+
+		traffic.requests += feed.getRequests() - requestsBefore;
+		traffic.kilobytes += (feed.getBytes() - bytesBefore) / 1024;
+	}
+
+	private void startBuild() throws Exception {
+
+		ContainerConfiguration configuration = new DefaultContainerConfiguration()
+				.setName("resolve-benchmark")
+				.setClassPathScanning(PlexusConstants.SCANNING_INDEX)
+				.setAutoWiring(true);
+
+		container = new DefaultPlexusContainer(configuration);
+
+		MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+		request.setLocalRepository(new MavenArtifactRepository("local", localRepository.toURI().toString(),
+				new DefaultRepositoryLayout(), new ArtifactRepositoryPolicy(), new ArtifactRepositoryPolicy()));
+		request.setSystemProperties(System.getProperties());
+
+		MavenProject project = new MavenProject();
+		project.getProperties().setProperty("net.framework.version", "net472");
+
+		container.addComponent(new MavenSession(container, request, new DefaultMavenExecutionResult(), project), MavenSession.class, "default");
+
+		wagon = container.lookup(Wagon.class, "nuget");
+		wagon.connect(new Repository("fake-feed", feed.getUrl()));
+	}
+
+	private void stopBuild() throws Exception {
+
+		wagon.disconnect();
+		container.dispose();
+	}
+
+	private void build() throws Exception {
+
+		List<Future<Void>> results = new ArrayList<>();
+
+		for (final List<String> roots : modules) {
+
+			results.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					resolveModule(roots);
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> result : results) {
+
+			result.get();
+		}
+	}
+
+	/**
+	 * This method resolves the dependency tree of a module breadth first, as maven does.
+	 */
+	private void resolveModule(List<String> roots) throws Exception {
+
+		Set<String> visited = new HashSet<>(roots);
+		Deque<String> queue = new ArrayDeque<>(roots);
+
+		while (!queue.isEmpty()) {
+
+			String id = queue.removeFirst();
+
+			resolveFile(resourceName(id, "pom"));
+
+			for (String dependency : feed.getDependencies(id)) {
+
+				if (visited.add(dependency)) {
+
+					queue.addLast(dependency);
+				}
+			}
+		}
+
+		for (String id : visited) {
+
+			resolveFile(resourceName(id, "dll"));
+		}
+	}
+
+	private void resolveFile(String resourceName) throws Exception {
+
+		File destination = new File(localRepository, resourceName);
+
+		if (destination.exists()) {
+
+			return;
+		}
+
+		// maven downloads to a temporary file next to the destination and renames it when it is complete.
+		File tempFile = new File(destination.getParentFile(), "aether-" + UUID.randomUUID() + ".tmp");
+		File checksumFile = new File(tempFile.getAbsolutePath() + ".sha1");
+
+		try {
+
+			wagon.get(resourceName, tempFile);
+			wagon.get(resourceName + ".sha1", checksumFile);
+
+			Files.move(tempFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		} finally {
+
+			Files.deleteIfExists(tempFile.toPath());
+			Files.deleteIfExists(checksumFile.toPath());
+		}
+	}
+
+	private static String resourceName(String id, String type) {
+
+		return id.replace('.', '/') + "/" + id + "/" + FakeFeed.VERSION + "/" + id + "-" + FakeFeed.VERSION + "." + type;
+	}
+
+	/**
+	 * This method distributes the packages no other package depends on to the modules of the reactor.
+	 */
+	private static List<List<String>> modules(FakeFeed feed) {
+
+		Set<String> dependedOn = new HashSet<>();
+
+		for (String id : feed.getIds()) {
+
+			dependedOn.addAll(feed.getDependencies(id));
+		}
+
+		List<List<String>> result = new ArrayList<>();
+
+		for (int module = 0; module < MODULES; module++) {
+
+			result.add(new ArrayList<String>());
+		}
+
+		int module = 0;
+
+		for (String id : feed.getIds()) {
+
+			if (!dependedOn.contains(id)) {
+
+				result.get(module++ % MODULES).add(id);
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,183 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class generates nuget packages for the benchmarks, so nothing has to be downloaded. A package contains a
+ * nuspec, a dll and an xml documentation per target framework and the usual packaging files. Libraries are filled
+ * with pseudo random bytes from a small alphabet, so they compress about as well as real assemblies.
+ *
+ * @author miracelwhipp
+ */
+public final class SamplePackages {
+
+	public static final String[] FRAMEWORKS = {
+			"net20", "net35", "net40", "net45", "net461", "net472", "netstandard1.0", "netstandard1.3",
+			"netstandard2.0", "netstandard2.1", "netcoreapp3.1", "net5.0", "net6.0", "net7.0", "net8.0", "portable-net45+win8"
+	};
+
+	private SamplePackages() {
+	}
+
+	/**
+	 * This method writes a package.
+	 *
+	 * @param packageFile  the file to write
+	 * @param id           the id of the package
+	 * @param version      the version of the package
+	 * @param frameworks   the number of target frameworks, taken from {@link #FRAMEWORKS}
+	 * @param librarySize  the size of each dll in bytes
+	 * @param dependencies the ids of the packages this package depends on, all in version 1.0.0
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File packageFile, String id, String version, int frameworks, int librarySize, List<String> dependencies) throws IOException {
+
+		write(packageFile, id, version, Arrays.copyOf(FRAMEWORKS, Math.min(frameworks, FRAMEWORKS.length)), librarySize, dependencies);
+	}
+
+	/**
+	 * This method writes a package for the given target frameworks.
+	 *
+	 * @param packageFile  the file to write
+	 * @param id           the id of the package
+	 * @param version      the version of the package
+	 * @param frameworks   the short names of the target frameworks
+	 * @param librarySize  the size of each dll in bytes
+	 * @param dependencies the ids of the packages this package depends on, all in version 1.0.0
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File packageFile, String id, String version, String[] frameworks, int librarySize, List<String> dependencies) throws IOException {
+
+		Random random = new Random(id.hashCode());
+
+		try (ZipOutputStream target = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(packageFile)))) {
+
+			entry(target, id + ".nuspec", nuspec(id, version, frameworks, dependencies).getBytes(StandardCharsets.UTF_8));
+			entry(target, "[Content_Types].xml", ("<?xml version=\"1.0\" encoding=\"utf-8\"?><Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+					+ "<Default Extension=\"dll\" ContentType=\"application/octet\" /><Default Extension=\"nuspec\" ContentType=\"application/octet\" /></Types>").getBytes(StandardCharsets.UTF_8));
+			entry(target, "_rels/.rels", "<?xml version=\"1.0\" encoding=\"utf-8\"?><Relationships />".getBytes(StandardCharsets.UTF_8));
+
+			for (String framework : frameworks) {
+
+				entry(target, "lib/" + framework + "/" + id + ".dll", library(random, librarySize));
+				entry(target, "lib/" + framework + "/" + id + ".xml", documentation(id, librarySize / 2));
+			}
+		}
+	}
+
+	/**
+	 * This method returns the nuspec of a package written by {@link #write(File, String, String, String[], int, List)}.
+	 */
+	public static String nuspec(String id, String version, String[] frameworks, List<String> dependencies) {
+
+		StringBuilder result = new StringBuilder(1024);
+
+		result.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+				.append("<package xmlns=\"http://schemas.microsoft.com/packaging/2013/05/nuspec.xsd\">\n")
+				.append("  <metadata>\n")
+				.append("    <id>").append(id).append("</id>\n")
+				.append("    <version>").append(version).append("</version>\n")
+				.append("    <authors>Sample Authors</authors>\n")
+				.append("    <description>A generated package.</description>\n")
+				.append("    <dependencies>\n");
+
+		for (String framework : frameworks) {
+
+			if (framework.startsWith("portable")) {
+
+				continue;
+			}
+
+			result.append("      <group targetFramework=\"").append(framework).append("\">\n");
+
+			for (String dependency : dependencies) {
+
+				result.append("        <dependency id=\"").append(dependency).append("\" version=\"1.0.0\" />\n");
+			}
+
+			result.append("      </group>\n");
+		}
+
+		return result.append("    </dependencies>\n")
+				.append("  </metadata>\n")
+				.append("</package>\n")
+				.toString();
+	}
+
+	private static byte[] library(Random random, int size) {
+
+		byte[] result = new byte[size];
+
+		for (int index = 0; index < size; index++) {
+
+			result[index] = (byte) random.nextInt(16);
+		}
+
+		return result;
+	}
+
+	private static byte[] documentation(String id, int size) {
+
+		StringBuilder result = new StringBuilder(size + 128);
+
+		result.append("<?xml version=\"1.0\"?><doc><assembly><name>").append(id).append("</name></assembly><members>");
+
+		for (int member = 0; result.length() < size; member++) {
+
+			result.append("<member name=\"M:").append(id).append(".Type").append(member % 97).append(".Method").append(member)
+					.append("\"><summary>Does the work of method ").append(member).append(".</summary></member>");
+		}
+
+		return result.append("</members></doc>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void entry(ZipOutputStream target, String name, byte[] content) throws IOException {
+
+		target.putNextEntry(new ZipEntry(name));
+		target.write(content);
+		target.closeEntry();
+	}
+
+	/**
+	 * This method writes the index.json of a package with the given number of versions.
+	 *
+	 * @param target   the stream to write to. It is not closed.
+	 * @param versions the number of versions
+	 * @throws IOException if the stream cannot be written
+	 */
+	public static void writeIndex(OutputStream target, int versions) throws IOException {
+
+		StringBuilder result = new StringBuilder(versions * 24);
+
+		result.append("{\"versions\":[");
+
+		for (int index = 0; index < versions; index++) {
+
+			if (index > 0) {
+
+				result.append(',');
+			}
+
+			result.append('"').append(index / 100).append('.').append(index / 10 % 10).append('.').append(index % 10);
+
+			if (index % 7 == 6) {
+
+				result.append("-preview.").append(index);
+			}
+
+			result.append('"');
+		}
+
+		target.write(result.append("]}").toString().getBytes(StandardCharsets.UTF_8));
+	}
+}
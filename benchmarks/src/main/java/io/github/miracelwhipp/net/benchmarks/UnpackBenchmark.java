@@ -0,0 +1,128 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.common.Streams;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark unpacks generated nuget packages the ways the wagon does: completely with
+ * {@link Streams#unpackStream}, completely on demand with {@link Streams#unpackForFile}, and a single entry with
+ * {@link Streams#extractForFile}. The cold benchmarks start from an empty directory each time, the warm ones find
+ * the package unpacked already.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnpackBenchmark {
+
+	private static final String ID = "Sample.Library";
+
+	@Param({"4", "16"})
+	public int frameworks;
+
+	@Param({"262144"})
+	public int librarySize;
+
+	private File directory;
+	private File packageFile;
+	private File unpackDirectory;
+	private File libraryEntry;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		directory = Files.createTempDirectory("unpack-benchmark").toFile();
+		packageFile = new File(directory, ID.toLowerCase() + ".1.0.0.nupkg");
+		unpackDirectory = new File(directory, packageFile.getName() + ".unpack");
+		libraryEntry = new File("lib/" + SamplePackages.FRAMEWORKS[0] + "/" + ID + ".dll");
+
+		SamplePackages.write(packageFile, ID, "1.0.0", frameworks, librarySize, Collections.<String>emptyList());
+
+		// the wagon only reuses unpacked files younger than their package.
+		packageFile.setLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+
+		FileUtils.deleteDirectory(directory);
+	}
+
+	/**
+	 * This state removes everything unpacked before each invocation.
+	 */
+	@State(Scope.Thread)
+	public static class Cold {
+
+		@Setup(Level.Invocation)
+		public void clean(UnpackBenchmark benchmark) throws Exception {
+
+			FileUtils.deleteDirectory(benchmark.unpackDirectory);
+			FileUtils.deleteQuietly(new File(benchmark.unpackDirectory.getAbsolutePath() + ".complete"));
+		}
+	}
+
+	@Benchmark
+	public File unpackStream(Cold cold) throws Exception {
+
+		try (FileInputStream source = new FileInputStream(packageFile)) {
+
+			Streams.unpackStream(source, unpackDirectory);
+		}
+
+		return unpackDirectory;
+	}
+
+	@Benchmark
+	public File unpackForFileCold(Cold cold) throws Exception {
+
+		return Streams.unpackForFile(packageFile, libraryEntry);
+	}
+
+	@Benchmark
+	public File unpackForFileWarm() throws Exception {
+
+		return Streams.unpackForFile(packageFile, libraryEntry);
+	}
+
+	@Benchmark
+	public File unpackForFileLockedCold(Cold cold) throws Exception {
+
+		return Streams.unpackForFile(packageFile, libraryEntry, true);
+	}
+
+	@Benchmark
+	public File extractForFileCold(Cold cold) throws Exception {
+
+		return Streams.extractForFile(packageFile, libraryEntry.getPath(), false);
+	}
+
+	@Benchmark
+	public File extractForFileWarm() throws Exception {
+
+		return Streams.extractForFile(packageFile, libraryEntry.getPath(), false);
+	}
+}
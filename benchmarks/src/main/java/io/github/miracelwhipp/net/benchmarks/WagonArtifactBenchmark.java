@@ -0,0 +1,149 @@
+package io.github.miracelwhipp.net.benchmarks;
+
+import io.github.miracelwhipp.net.common.WagonArtifact;
+import io.github.miracelwhipp.net.nuget.plugin.NugetArtifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the work done for each resource a wagon is asked for: parsing the resource name and
+ * deriving the paths of the artifact. The legacy methods repeat the parsing with split and the path building with
+ * regular expressions the wagon used before artifacts were interned. Run it with {@code -prof gc} to compare their
+ * allocation rates.
+ *
+ * @author miracelwhipp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WagonArtifactBenchmark {
+
+	@Param({
+			"Newtonsoft.Json/Newtonsoft.Json/13.0.1/Newtonsoft.Json-13.0.1.dll",
+			"System.Runtime.CompilerServices.Unsafe/System.Runtime.CompilerServices.Unsafe/6.0.0/System.Runtime.CompilerServices.Unsafe-6.0.0.pom",
+			"NUnit/NUnit/maven-metadata.xml"
+	})
+	public String resourceName;
+
+	@Benchmark
+	public WagonArtifact parse() {
+
+		return WagonArtifact.fromWagonResourceString(resourceName);
+	}
+
+	@Benchmark
+	public String nugetResourceString() {
+
+		return NugetArtifact.fromMavenResourceString(resourceName).resourceString();
+	}
+
+	@Benchmark
+	public String mavenResourceString() {
+
+		return WagonArtifact.fromWagonResourceString(resourceName).mavenResourceString();
+	}
+
+	@Benchmark
+	public File artifactFilename() {
+
+		return WagonArtifact.fromWagonResourceString(resourceName).getArtifactFilename();
+	}
+
+	@Benchmark
+	public String[] legacyParse() {
+
+		return legacyFromWagonResourceString(resourceName);
+	}
+
+	@Benchmark
+	public String legacyNugetResourceString() {
+
+		String[] artifact = legacyFromWagonResourceString(resourceName);
+
+		String groupId = artifact[0];
+		String version = artifact[2];
+
+		if (Boolean.parseBoolean(artifact[5])) {
+
+			return groupId.toLowerCase(Locale.ENGLISH) + "/index.json";
+		}
+
+		return groupId.toLowerCase(Locale.ENGLISH) + "/" + version.toLowerCase(Locale.ENGLISH) + "/" + groupId.toLowerCase(Locale.ENGLISH) + "." + version.toLowerCase(Locale.ENGLISH) + NugetArtifact.EXTENSION_PACKAGE;
+	}
+
+	@Benchmark
+	public String legacyMavenResourceString() {
+
+		String[] artifact = legacyFromWagonResourceString(resourceName);
+
+		return artifact[0].replaceAll("\\.", "/") + "/" + artifact[1] + "/" + artifact[2] + "/" +
+				artifact[1] + "-" + artifact[2] + (artifact[3].isEmpty() ? "" : "-" + artifact[3]) + "." + artifact[4];
+	}
+
+	/**
+	 * This method is the parser the wagon used before, returning group id, artifact id, version, classifier, type and
+	 * whether the resource is metadata.
+	 */
+	private static String[] legacyFromWagonResourceString(String resourceName) {
+
+		String[] parts = resourceName.split("/");
+
+		int artifactIdPosition = parts.length - 3;
+		int versionPosition = parts.length - 2;
+		int typePosition = parts.length - 1;
+
+		StringBuilder groupId = new StringBuilder(resourceName.length());
+		boolean first = true;
+
+		for (int index = 0; index < artifactIdPosition; index++) {
+
+			if (first) {
+				first = false;
+			} else {
+				groupId.append(".");
+			}
+
+			groupId.append(parts[index]);
+		}
+
+		boolean isMetaData = parts[typePosition].equalsIgnoreCase("maven-metadata.xml");
+
+		if (isMetaData) {
+
+			if (!first) {
+				groupId.append(".");
+			}
+
+			groupId.append(parts[artifactIdPosition]);
+		}
+
+		int position = parts[typePosition].lastIndexOf(".");
+
+		String type = parts[typePosition].substring(position + 1);
+
+		String artifactId = isMetaData ? parts[versionPosition] : parts[artifactIdPosition];
+
+		String version = isMetaData ? "" : parts[versionPosition];
+
+		int startClassifier = artifactId.length() + version.length() + 2;
+
+		String classifier = isMetaData | startClassifier > position ? "" : parts[typePosition].substring(startClassifier, position);
+
+		return new String[]{groupId.toString(), artifactId, version, classifier, type, Boolean.toString(isMetaData)};
+	}
+}
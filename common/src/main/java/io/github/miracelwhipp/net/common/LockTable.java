@@ -0,0 +1,154 @@
+package io.github.miracelwhipp.net.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class provides a lock per key. Entries are counted by their users and removed from the table as soon as the
+ * last user released them, so the table only holds the keys that are currently in use. Looking up a lock does not
+ * block other lookups.
+ *
+ * @author miracelwhipp
+ */
+public class LockTable {
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * This method acquires the lock for the given key, waiting if necessary. The lock is released by closing the
+	 * returned handle.
+	 *
+	 * @param key the key to lock
+	 * @return a handle to release the lock
+	 */
+	public Lock lock(String key) {
+
+		Entry entry = retain(key);
+
+		try {
+
+			entry.lock.lock();
+
+		} catch (RuntimeException | Error e) {
+
+			release(entry);
+			throw e;
+		}
+
+		return new Lock(entry);
+	}
+
+	/**
+	 * This method returns the number of keys currently held or waited for.
+	 *
+	 * @return the number of entries in the table
+	 */
+	public int size() {
+
+		return entries.size();
+	}
+
+	private Entry retain(String key) {
+
+		while (true) {
+
+			Entry entry = entries.get(key);
+
+			if (entry == null) {
+
+				Entry created = new Entry(key);
+
+				entry = entries.putIfAbsent(key, created);
+
+				if (entry == null) {
+
+					return created;
+				}
+			}
+
+			if (entry.retain()) {
+
+				return entry;
+			}
+
+			// the entry was retired by its last user and is about to be removed.
+			entries.remove(key, entry);
+		}
+	}
+
+	private void release(Entry entry) {
+
+		if (entry.release()) {
+
+			entries.remove(entry.key, entry);
+		}
+	}
+
+	/**
+	 * This class represents an acquired lock of a {@link LockTable}.
+	 */
+	public final class Lock implements AutoCloseable {
+
+		private final Entry entry;
+
+		private boolean closed;
+
+		private Lock(Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public void close() {
+
+			if (closed) {
+
+				return;
+			}
+
+			closed = true;
+
+			entry.lock.unlock();
+			release(entry);
+		}
+	}
+
+	private static final class Entry {
+
+		private static final int RETIRED = -1;
+
+		private final String key;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final AtomicInteger users = new AtomicInteger(1);
+
+		private Entry(String key) {
+			this.key = key;
+		}
+
+		private boolean retain() {
+
+			while (true) {
+
+				int current = users.get();
+
+				if (current == RETIRED) {
+
+					return false;
+				}
+
+				if (users.compareAndSet(current, current + 1)) {
+
+					return true;
+				}
+			}
+		}
+
+		private boolean release() {
+
+			return users.decrementAndGet() == 0 && users.compareAndSet(0, RETIRED);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package io.github.miracelwhipp.net.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+
+/**
+ * This class provides an advisory lock on a file that is respected by all processes using this class - e.g. several
+ * maven builds sharing the same local repository. Since a java process cannot hold overlapping locks on the same
+ * file, threads of the same process are serialized before the file lock is acquired.
+ *
+ * @author miracelwhipp
+ */
+public final class ProcessLock implements Closeable {
+
+	public static final String SUFFIX_LOCK = ".lock";
+
+	private static final LockTable LOCAL_LOCKS = new LockTable();
+
+	private final LockTable.Lock localLock;
+	private final RandomAccessFile file;
+	private final FileLock lock;
+
+	private ProcessLock(LockTable.Lock localLock, RandomAccessFile file, FileLock lock) {
+		this.localLock = localLock;
+		this.file = file;
+		this.lock = lock;
+	}
+
+	/**
+	 * This method acquires the lock guarding the given file. The lock is held on a sibling file with the suffix
+	 * {@value #SUFFIX_LOCK}. It waits until no other thread or process holds the lock.
+	 *
+	 * @param guardedFile the file to guard
+	 * @return the acquired lock
+	 * @throws IOException if the lock file cannot be created or locked
+	 */
+	public static ProcessLock acquire(File guardedFile) throws IOException {
+
+		File lockFile = new File(guardedFile.getAbsolutePath() + SUFFIX_LOCK);
+
+		LockTable.Lock localLock = LOCAL_LOCKS.lock(lockFile.getAbsolutePath());
+
+		RandomAccessFile file = null;
+
+		try {
+
+			File parent = lockFile.getParentFile();
+
+			if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+
+				throw new IOException("unable to create directory " + parent.getAbsolutePath());
+			}
+
+			file = new RandomAccessFile(lockFile, "rw");
+
+			return new ProcessLock(localLock, file, file.getChannel().lock());
+
+		} catch (IOException | RuntimeException e) {
+
+			if (file != null) {
+
+				file.close();
+			}
+
+			localLock.close();
+
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+
+			lock.release();
+			file.close();
+
+		} finally {
+
+			localLock.close();
+		}
+	}
+}
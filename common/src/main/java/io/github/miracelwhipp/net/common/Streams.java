@@ -2,7 +2,6 @@ package io.github.miracelwhipp.net.common;
 
 import org.apache.commons.io.FileUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -11,8 +10,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.UUID;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -22,6 +33,15 @@ import java.util.zip.ZipInputStream;
  */
 public class Streams {
 
+	/**
+	 * The suffix of the marker recording when the file next to it was extracted. See {@link #recordExtraction(File)}.
+	 */
+	public static final String SUFFIX_EXTRACTED = ".extracted";
+
+	private static final int MAXIMAL_POOLED_BUFFER_SIZE = 512 * 1024;
+
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
 	private Streams() {
 	}
 
@@ -72,30 +92,195 @@ public class Streams {
 		}
 	}
 
+	/**
+	 * This method copies the content of the source stream to the target stream. If both streams are file streams, the
+	 * content is transferred by their channels. Otherwise, a buffer of the given size is used that is reused by
+	 * later calls of the same thread.
+	 *
+	 * @param source     the stream to read from
+	 * @param target     the stream to write to
+	 * @param bufferSize the size of the buffer to use
+	 * @return the number of bytes copied
+	 * @throws IOException if reading or writing fails
+	 */
 	public static long stream(InputStream source, OutputStream target, int bufferSize) throws IOException {
 
-		byte[] buffer = new byte[bufferSize];
+		if (source instanceof FileInputStream && target instanceof FileOutputStream) {
+
+			FileChannel sourceChannel = ((FileInputStream) source).getChannel();
+
+			// channels of pipes or devices report no size, they are copied by the buffer.
+			if (sourceChannel.size() > 0) {
+
+				return transfer(sourceChannel, ((FileOutputStream) target).getChannel());
+			}
+		}
+
+		byte[] buffer = acquireBuffer(bufferSize);
+
+		try {
+
+			long completeSize = 0;
+			int bytesRead = 0;
+
+			while ((bytesRead = source.read(buffer, 0, bufferSize)) > 0) {
+
+				target.write(buffer, 0, bytesRead);
+				completeSize += bytesRead;
+			}
+
+			return completeSize;
+
+		} finally {
+
+			releaseBuffer(buffer);
+		}
+	}
+
+	/**
+	 * This method copies a file using {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets
+	 * the operating system copy the content without passing it through the java heap.
+	 *
+	 * @param source the file to copy
+	 * @param target the file to create or overwrite
+	 * @return the number of bytes copied
+	 * @throws IOException if reading or writing fails
+	 */
+	public static long copyFile(File source, File target) throws IOException {
+
+		File parent = target.getAbsoluteFile().getParentFile();
+
+		if (parent != null) {
+
+			makeDirectories(parent);
+		}
+
+		try (
+				FileInputStream sourceStream = new FileInputStream(source);
+				FileOutputStream targetStream = new FileOutputStream(target)
+		) {
+
+			return transfer(sourceStream.getChannel(), targetStream.getChannel());
+		}
+	}
+
+	/**
+	 * This method reads the given file once, updating all given digests with its content.
+	 *
+	 * @param file    the file to digest
+	 * @param digests the digests to update
+	 * @return the number of bytes read
+	 * @throws IOException if reading fails
+	 */
+	public static long digest(File file, MessageDigest... digests) throws IOException {
+
+		byte[] buffer = acquireBuffer(64 * 1024);
+
+		try (InputStream source = new FileInputStream(file)) {
+
+			long completeSize = 0;
+			int bytesRead;
+
+			while ((bytesRead = source.read(buffer, 0, 64 * 1024)) > 0) {
+
+				for (MessageDigest digest : digests) {
+
+					digest.update(buffer, 0, bytesRead);
+				}
+
+				completeSize += bytesRead;
+			}
+
+			return completeSize;
+
+		} finally {
+
+			releaseBuffer(buffer);
+		}
+	}
+
+	private static long transfer(FileChannel source, FileChannel target) throws IOException {
 
+		long position = source.position();
+		long size = source.size();
 		long completeSize = 0;
-		int bytesRead = 0;
 
-		while ((bytesRead = source.read(buffer)) > 0) {
+		while (position < size) {
+
+			long transferred = source.transferTo(position, size - position, target);
+
+			if (transferred <= 0) {
+
+				break;
+			}
 
-			target.write(buffer, 0, bytesRead);
-			completeSize += bytesRead;
+			position += transferred;
+			completeSize += transferred;
 		}
 
+		source.position(position);
+
 		return completeSize;
 	}
 
+	private static byte[] acquireBuffer(int bufferSize) {
+
+		if (bufferSize > MAXIMAL_POOLED_BUFFER_SIZE) {
+
+			return new byte[bufferSize];
+		}
+
+		byte[] result = BUFFERS.get();
+
+		if (result == null || result.length < bufferSize) {
+
+			return new byte[bufferSize];
+		}
+
+		// the buffer is taken from the pool while in use, so nested calls of the same thread do not share it.
+		BUFFERS.set(null);
+
+		return result;
+	}
+
+	private static void releaseBuffer(byte[] buffer) {
+
+		if (buffer.length > MAXIMAL_POOLED_BUFFER_SIZE) {
+
+			return;
+		}
+
+		byte[] pooled = BUFFERS.get();
+
+		if (pooled == null || pooled.length < buffer.length) {
+
+			BUFFERS.set(buffer);
+		}
+	}
+
 	public static byte[] read(InputStream source, int bufferSize) throws IOException {
 
-		try (ByteArrayOutputStream target = new ByteArrayOutputStream()) {
+		byte[] result = new byte[Math.max(Math.max(source.available(), bufferSize), 1)];
+		int size = 0;
+
+		while (true) {
+
+			if (size == result.length) {
+
+				result = Arrays.copyOf(result, result.length * 2);
+			}
+
+			int bytesRead = source.read(result, size, result.length - size);
+
+			if (bytesRead < 0) {
 
-			stream(source, target, bufferSize);
+				break;
+			}
 
-			return target.toByteArray();
+			size += bytesRead;
 		}
+
+		return size == result.length ? result : Arrays.copyOf(result, size);
 	}
 
 	public static void loadResource(Class<?> clazz, String resourceDir, String resourceName, File targetDirectory) throws IOException {
@@ -175,6 +360,23 @@ public class Streams {
 
 	public static File unpackForFile(File packageFile, File resourceFile) throws IOException {
 
+		return unpackForFile(packageFile, resourceFile, false);
+	}
+
+	/**
+	 * This method unpacks the given package next to it unless this has already been done and returns the requested
+	 * file of the package.
+	 *
+	 * @param packageFile          the zip file to unpack
+	 * @param resourceFile         the relative path of the requested file in the package
+	 * @param lockAcrossProcesses  if true, the unpacking is guarded by a {@link ProcessLock} and completed unpacking
+	 *                             is recorded by a marker file, so concurrent processes neither unpack the same
+	 *                             package twice nor see a partially unpacked package.
+	 * @return the location of the requested file. It does not exist if the package does not contain the file.
+	 * @throws IOException if the package cannot be unpacked
+	 */
+	public static File unpackForFile(File packageFile, File resourceFile, boolean lockAcrossProcesses) throws IOException {
+
 		if (resourceFile.isAbsolute()) {
 
 			throw new IllegalStateException("resource file cannot be absolut. " + resourceFile.getPath());
@@ -184,16 +386,218 @@ public class Streams {
 
 		resourceFile = new File(directory, resourceFile.getPath());
 
-		if (resourceFile.exists() && resourceFile.lastModified() > packageFile.lastModified()) {
+		if (!lockAcrossProcesses) {
+
+			if (resourceFile.exists() && resourceFile.lastModified() > packageFile.lastModified()) {
+
+				return resourceFile;
+			}
+
+			try (FileInputStream source = new FileInputStream(packageFile)) {
+
+				Streams.unpackStream(source, directory);
+			}
+
+			return resourceFile;
+		}
+
+		File completionMarker = new File(directory.getAbsolutePath() + ".complete");
+
+		if (isComplete(completionMarker, packageFile)) {
 
 			return resourceFile;
 		}
 
-		try (FileInputStream source = new FileInputStream(packageFile)) {
+		try (ProcessLock ignored = ProcessLock.acquire(directory)) {
+
+			if (isComplete(completionMarker, packageFile)) {
+
+				return resourceFile;
+			}
+
+			try (FileInputStream source = new FileInputStream(packageFile)) {
+
+				Streams.unpackStream(source, directory);
+			}
+
+			if (!completionMarker.createNewFile() && !completionMarker.setLastModified(System.currentTimeMillis())) {
 
-			Streams.unpackStream(source, directory);
+				throw new IOException("unable to create marker " + completionMarker.getAbsolutePath());
+			}
 		}
 
 		return resourceFile;
 	}
+
+	/**
+	 * This method lists the files contained in the given zip file. It only reads the central directory of the zip
+	 * file.
+	 *
+	 * @param packageFile the zip file
+	 * @return the names of all file entries in the zip file
+	 * @throws IOException if the zip file cannot be read
+	 */
+	public static List<String> listEntries(File packageFile) throws IOException {
+
+		List<String> result = new ArrayList<>();
+
+		try (ZipFile zipFile = new ZipFile(packageFile)) {
+
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+			while (entries.hasMoreElements()) {
+
+				ZipEntry entry = entries.nextElement();
+
+				if (!entry.isDirectory()) {
+
+					result.add(entry.getName());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method extracts a single file of the given package to the same location {@link #unpackForFile(File, File)}
+	 * would unpack it to. Only the requested entry is read - the package is accessed through its central directory.
+	 *
+	 * @param packageFile         the zip file to extract from
+	 * @param entryName           the name of the entry to extract
+	 * @param lockAcrossProcesses if true, the extraction is guarded by a {@link ProcessLock}
+	 * @return the location of the requested file. It does not exist if the package does not contain the file.
+	 * @throws IOException if the package cannot be read
+	 */
+	public static File extractForFile(File packageFile, String entryName, boolean lockAcrossProcesses) throws IOException {
+
+		File directory = new File(packageFile.getParentFile(), packageFile.getName() + ".unpack");
+
+		return extractEntries(packageFile, directory, Collections.singletonList(entryName), lockAcrossProcesses).get(0);
+	}
+
+	/**
+	 * This method extracts the given entries of a zip file to the target directory. Entries that have already been
+	 * extracted after the zip file was last modified are not extracted again. Since every entry is written to a
+	 * temporary file that gets renamed when complete, an existing file is always completely extracted.
+	 *
+	 * @param packageFile         the zip file to extract from
+	 * @param targetDirectory     the directory to extract to
+	 * @param entryNames          the names of the entries to extract
+	 * @param lockAcrossProcesses if true, the extraction is guarded by a {@link ProcessLock}
+	 * @return the locations of the requested files in the order of the given names. Files not contained in the
+	 * package do not exist.
+	 * @throws IOException if the package cannot be read
+	 */
+	public static List<File> extractEntries(
+			File packageFile, File targetDirectory, Collection<String> entryNames, boolean lockAcrossProcesses) throws IOException {
+
+		List<File> result = new ArrayList<>(entryNames.size());
+		List<String> missingEntries = new ArrayList<>();
+
+		for (String entryName : entryNames) {
+
+			File targetFile = new File(targetDirectory, entryName);
+
+			result.add(targetFile);
+
+			if (!isExtracted(targetFile, packageFile)) {
+
+				missingEntries.add(entryName);
+			}
+		}
+
+		if (missingEntries.isEmpty()) {
+
+			return result;
+		}
+
+		if (!lockAcrossProcesses) {
+
+			extractMissingEntries(packageFile, targetDirectory, missingEntries);
+
+			return result;
+		}
+
+		try (ProcessLock ignored = ProcessLock.acquire(targetDirectory)) {
+
+			extractMissingEntries(packageFile, targetDirectory, missingEntries);
+		}
+
+		return result;
+	}
+
+	private static void extractMissingEntries(File packageFile, File targetDirectory, List<String> entryNames) throws IOException {
+
+		try (ZipFile zipFile = new ZipFile(packageFile)) {
+
+			for (String entryName : entryNames) {
+
+				File targetFile = new File(targetDirectory, entryName);
+
+				if (isExtracted(targetFile, packageFile)) {
+
+					continue;
+				}
+
+				ZipEntry entry = zipFile.getEntry(entryName);
+
+				if (entry == null || entry.isDirectory()) {
+
+					continue;
+				}
+
+				makeDirectories(targetFile.getParentFile());
+
+				File tempFile = new File(targetFile.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+				try (
+						InputStream source = zipFile.getInputStream(entry);
+						FileOutputStream target = new FileOutputStream(tempFile)
+				) {
+
+					stream(source, target, 128 * 1024);
+
+				} catch (IOException e) {
+
+					Files.deleteIfExists(tempFile.toPath());
+					throw e;
+				}
+
+				Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+		}
+	}
+
+	/**
+	 * This method records that the given extracted file is up to date. An extracted file that gets replaced by a hard
+	 * link to a file with the same content takes the modification time of that file, which may be older than the
+	 * package. The marker keeps {@link #extractEntries(File, File, Collection, boolean)} from extracting it again.
+	 *
+	 * @param targetFile the extracted file
+	 * @throws IOException if the marker cannot be written
+	 */
+	public static void recordExtraction(File targetFile) throws IOException {
+
+		FileUtils.touch(new File(targetFile.getAbsolutePath() + SUFFIX_EXTRACTED));
+	}
+
+	private static boolean isExtracted(File targetFile, File packageFile) {
+
+		if (!targetFile.exists()) {
+
+			return false;
+		}
+
+		long packageTimestamp = packageFile.lastModified();
+
+		// a missing marker has the modification time 0.
+		return targetFile.lastModified() >= packageTimestamp
+				|| new File(targetFile.getAbsolutePath() + SUFFIX_EXTRACTED).lastModified() >= packageTimestamp;
+	}
+
+	private static boolean isComplete(File completionMarker, File packageFile) {
+
+		return completionMarker.exists() && completionMarker.lastModified() >= packageFile.lastModified();
+	}
 }
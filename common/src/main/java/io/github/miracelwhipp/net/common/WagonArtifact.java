@@ -1,22 +1,39 @@
 package io.github.miracelwhipp.net.common;
 
 import java.io.File;
-import java.util.Locale;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * TODO: document me
+ * This class holds the coordinates of an artifact maven requests from a wagon. Instances are interned, so the
+ * paths derived from them are rarely computed twice. The interned instances are dropped when there are too many of
+ * them, so equal artifacts are usually, but not always the same instance.
  *
  * @author miracelwhipp
  */
 public class WagonArtifact {
 
+	public static final String METADATA_FILE_NAME = "maven-metadata.xml";
+
+	private static final int CACHE_SIZE = 4096;
+
+	private static final ConcurrentMap<WagonArtifact, WagonArtifact> INSTANCES = new ConcurrentHashMap<>();
+
+	private static final ConcurrentMap<String, WagonArtifact> BY_RESOURCE_NAME = new ConcurrentHashMap<>();
+
 	private final String groupId;
 	private final String artifactId;
 	private final boolean isMetadata;
 	private final String version;
 	private final String classifier;
 	private final String type;
+	private final int hashCode;
+
+	// derived values, computed when they are first used. races only compute them twice.
+	private String groupIdPath;
+	private File repositorySubdirectory;
+	private File artifactFilename;
+	private String mavenResourceString;
 
 	private WagonArtifact(String groupId, String artifactId, boolean isMetadata, String version, String classifier, String type) {
 		this.groupId = groupId;
@@ -25,6 +42,8 @@ public class WagonArtifact {
 		this.version = version;
 		this.classifier = classifier;
 		this.type = type;
+		this.hashCode = ((((groupId.hashCode() * 31 + artifactId.hashCode()) * 31 + version.hashCode()) * 31
+				+ classifier.hashCode()) * 31 + type.hashCode()) * 31 + (isMetadata ? 1 : 0);
 	}
 
 	public String getGroupId() {
@@ -51,14 +70,48 @@ public class WagonArtifact {
 		return isMetadata;
 	}
 
+	/**
+	 * This method returns the group id as relative path, e.g. org/example for org.example.
+	 *
+	 * @return the path using the separator of the platform
+	 */
+	public String getGroupIdPath() {
+
+		String result = groupIdPath;
+
+		if (result == null) {
+
+			result = groupId.replace('.', File.separatorChar);
+			groupIdPath = result;
+		}
+
+		return result;
+	}
+
 	public File getRepositorySubdirectory() {
 
-		return new File(new File(new File(groupIdPath(groupId)), artifactId), version);
+		File result = repositorySubdirectory;
+
+		if (result == null) {
+
+			result = new File(new File(new File(getGroupIdPath()), artifactId), version);
+			repositorySubdirectory = result;
+		}
+
+		return result;
 	}
 
 	public File getArtifactFilename() {
 
-		return new File(getRepositorySubdirectory(), plainFilename());
+		File result = artifactFilename;
+
+		if (result == null) {
+
+			result = new File(getRepositorySubdirectory(), plainFilename());
+			artifactFilename = result;
+		}
+
+		return result;
 	}
 
 	private String plainFilename() {
@@ -67,15 +120,16 @@ public class WagonArtifact {
 
 	public String mavenResourceString() {
 
-		return groupId.replaceAll("\\.", "/") + "/" + artifactId + "/" + version + "/" +
-				plainFilename();
-	}
+		String result = mavenResourceString;
 
+		if (result == null) {
 
-	private String groupIdPath(String groupId) {
-		return groupId.replaceAll("\\.", Matcher.quoteReplacement(File.separator));
-	}
+			result = groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + plainFilename();
+			mavenResourceString = result;
+		}
 
+		return result;
+	}
 
 	public static WagonArtifact newInstance(
 			String groupId, String artifactId, String version, String classifier, String type) {
@@ -91,7 +145,7 @@ public class WagonArtifact {
 			String type,
 			boolean isMetadata
 	) {
-		return new WagonArtifact(
+		return intern(new WagonArtifact(
 				groupId,
 				artifactId,
 				isMetadata, version,
@@ -102,57 +156,127 @@ public class WagonArtifact {
 //				isMetadata, version.toLowerCase(Locale.ENGLISH),
 //				classifier.toLowerCase(Locale.ENGLISH),
 //				type.toLowerCase(Locale.ENGLISH)
-		);
+		));
 	}
 
+	private static WagonArtifact intern(WagonArtifact artifact) {
+
+		WagonArtifact result = INSTANCES.get(artifact);
+
+		if (result != null) {
+
+			return result;
+		}
+
+		if (INSTANCES.size() >= CACHE_SIZE) {
+
+			INSTANCES.clear();
+		}
+
+		result = INSTANCES.putIfAbsent(artifact, artifact);
+
+		return result == null ? artifact : result;
+	}
+
+	/**
+	 * This method parses a resource name maven requests from a wagon, e.g. org/example/lib/1.0/lib-1.0-sources.jar
+	 * or org/example/lib/maven-metadata.xml. Maven asks for the same resources several times - checksums, retries,
+	 * parallel modules - so parsed names are remembered.
+	 *
+	 * @param resourceName the name of the resource
+	 * @return the artifact
+	 * @throws IllegalArgumentException if the name has less than three segments
+	 */
 	public static WagonArtifact fromWagonResourceString(String resourceName) {
 
-		String[] parts = resourceName.split("/");
+		WagonArtifact result = BY_RESOURCE_NAME.get(resourceName);
 
-		int artifactIdPosition = parts.length - 3;
-		int versionPosition = parts.length - 2;
-		int typePosition = parts.length - 1;
+		if (result == null) {
 
-		StringBuilder groupId = new StringBuilder(resourceName.length());
-		boolean first = true;
+			result = parse(resourceName);
 
-		for (int index = 0; index < artifactIdPosition; index++) {
+			if (BY_RESOURCE_NAME.size() >= CACHE_SIZE) {
 
-			if (first) {
-				first = false;
-			} else {
-				groupId.append(".");
+				BY_RESOURCE_NAME.clear();
 			}
 
-			groupId.append(parts[index]);
+			BY_RESOURCE_NAME.putIfAbsent(resourceName, result);
 		}
 
-		boolean isMetaData = parts[typePosition].equalsIgnoreCase("maven-metadata.xml");
+		return result;
+	}
+
+	/**
+	 * This method scans the resource name backwards from its end once, only the resulting coordinates are copied.
+	 */
+	private static WagonArtifact parse(String resourceName) {
 
-		if (isMetaData) {
+		int end = resourceName.length();
 
-			if (first) {
-				first = false;
-			} else {
-				groupId.append(".");
-			}
+		// split("/") ignores trailing separators.
+		while (end > 0 && resourceName.charAt(end - 1) == '/') {
 
-			groupId.append(parts[artifactIdPosition]);
+			end--;
 		}
 
-		int position = parts[typePosition].lastIndexOf(".");
+		int fileNameStart = resourceName.lastIndexOf('/', end - 1) + 1;
+		int versionStart = fileNameStart > 0 ? resourceName.lastIndexOf('/', fileNameStart - 2) + 1 : 0;
+
+		if (versionStart == 0) {
+
+			throw new IllegalArgumentException("resource name " + resourceName + " does not denote an artifact or its metadata");
+		}
+
+		int artifactIdStart = resourceName.lastIndexOf('/', versionStart - 2) + 1;
+
+		String fileName = resourceName.substring(fileNameStart, end);
 
-		String type = parts[typePosition].substring(position + 1);
+		boolean isMetaData = fileName.equalsIgnoreCase(METADATA_FILE_NAME);
 
-		String artifactId = isMetaData ? parts[versionPosition] : parts[artifactIdPosition];
+		int groupIdEnd = isMetaData ? versionStart : artifactIdStart;
 
-		String version = isMetaData ? "" : parts[versionPosition];
+		String groupId = groupIdEnd > 0 ? resourceName.substring(0, groupIdEnd - 1).replace('/', '.') : "";
+
+		int position = fileName.lastIndexOf('.');
+
+		String type = fileName.substring(position + 1);
+
+		String artifactId = isMetaData
+				? segment(resourceName, versionStart, fileNameStart)
+				: segment(resourceName, artifactIdStart, versionStart);
+
+		String version = isMetaData ? "" : segment(resourceName, versionStart, fileNameStart);
 
 		int startClassifier = artifactId.length() + version.length() + 2;
 
-		String classifier = isMetaData | startClassifier > position ? "" : parts[typePosition].substring(startClassifier, position);
+		String classifier = isMetaData | startClassifier > position ? "" : fileName.substring(startClassifier, position);
+
+		return newInstance(groupId, artifactId, version, classifier, type, isMetaData);
+	}
+
+	private static String segment(String resourceName, int start, int next) {
+
+		return next > start ? resourceName.substring(start, next - 1) : "";
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		WagonArtifact that = (WagonArtifact) o;
+		return hashCode == that.hashCode &&
+				isMetadata == that.isMetadata &&
+				groupId.equals(that.groupId) &&
+				artifactId.equals(that.artifactId) &&
+				version.equals(that.version) &&
+				classifier.equals(that.classifier) &&
+				type.equals(that.type);
+	}
+
+	@Override
+	public int hashCode() {
 
-		return newInstance(groupId.toString(), artifactId, version, classifier, type, isMetaData);
+		return hashCode;
 	}
 
 	@Override
@@ -12,18 +12,23 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This utility class helps transforming xml files.
@@ -32,6 +37,10 @@ import java.util.Iterator;
  */
 public final class Xml {
 
+	private static final ConcurrentMap<String, Templates> TEMPLATES = new ConcurrentHashMap<>();
+
+	private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORY = new ThreadLocal<>();
+
 	private Xml() {
 	}
 
@@ -43,12 +52,24 @@ public final class Xml {
 
 	public static void transformFile(File sourceFile, Source styleSheet, File resultFile, boolean namespaceAware, ParameterSetter parameterSetter) throws ParserConfigurationException, IOException, SAXException, TransformerException {
 
-		Document resultDocument = parse(sourceFile, namespaceAware);
+		transformFile(sourceFile, getTransformerFactory().newTemplates(styleSheet), resultFile, namespaceAware, parameterSetter);
+	}
+
+	/**
+	 * This method transforms the given file with an already compiled style sheet.
+	 *
+	 * @param sourceFile      the file to transform
+	 * @param styleSheet      the compiled style sheet
+	 * @param resultFile      the file to write the result to
+	 * @param namespaceAware  whether the source file is parsed namespace aware
+	 * @param parameterSetter sets the parameters of the transformation
+	 * @see #getTemplates(URL)
+	 */
+	public static void transformFile(File sourceFile, Templates styleSheet, File resultFile, boolean namespaceAware, ParameterSetter parameterSetter) throws ParserConfigurationException, IOException, SAXException, TransformerException {
 
-		// Use a Transformer for output
-		TransformerFactory tFactory = TransformerFactory.newInstance();
+		Document resultDocument = parse(sourceFile, namespaceAware);
 
-		Transformer transformer = tFactory.newTransformer(styleSheet);
+		Transformer transformer = styleSheet.newTransformer();
 
 		Source source = new DOMSource(resultDocument.getDocumentElement());
 		Result result = new StreamResult(resultFile);
@@ -58,6 +79,46 @@ public final class Xml {
 		transformer.transform(source, result);
 	}
 
+	/**
+	 * This method returns the compiled form of the given style sheet. Style sheets are compiled once and cached by
+	 * their location. The returned templates are thread safe.
+	 *
+	 * @param styleSheet the location of the style sheet
+	 * @return the compiled style sheet
+	 * @throws TransformerException if the style sheet cannot be compiled
+	 */
+	public static Templates getTemplates(URL styleSheet) throws TransformerException {
+
+		String key = styleSheet.toExternalForm();
+
+		Templates result = TEMPLATES.get(key);
+
+		if (result != null) {
+
+			return result;
+		}
+
+		result = getTransformerFactory().newTemplates(new StreamSource(key));
+
+		Templates existing = TEMPLATES.putIfAbsent(key, result);
+
+		return existing == null ? result : existing;
+	}
+
+	private static TransformerFactory getTransformerFactory() {
+
+		// the factory is not thread safe.
+		TransformerFactory result = TRANSFORMER_FACTORY.get();
+
+		if (result == null) {
+
+			result = TransformerFactory.newInstance();
+			TRANSFORMER_FACTORY.set(result);
+		}
+
+		return result;
+	}
+
 	public static Document parse(File sourceFile) throws ParserConfigurationException, SAXException, IOException {
 
 		return parse(sourceFile, true);
@@ -0,0 +1,356 @@
+package io.github.miracelwhipp.net.provider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class decides which of the target frameworks a nuget package provides - as library folders or dependency
+ * groups - can be used by a project targeting a given framework. Besides newer versions of the same framework, a
+ * project may use
+ * <ul>
+ * <li>the .NETStandard versions its framework implements, e.g. .NETFramework 4.6.1 implements .NETStandard 2.0</li>
+ * <li>portable class library profiles containing a compatible framework, e.g. portable-net45+win8</li>
+ * </ul>
+ * net5.0 and later are versions of .NETCoreApp. The most recently parsed frameworks and results of lookups are
+ * remembered, so repeated lookups cost a single map access.
+ *
+ * @author miracelwhipp
+ */
+public final class FrameworkCompatibility {
+
+	public static final String FAMILY_FRAMEWORK = "net";
+	public static final String FAMILY_CORE = "netcoreapp";
+	public static final String FAMILY_STANDARD = "netstandard";
+	public static final String FAMILY_PORTABLE = "portable";
+
+	private static final String NO_RESULT = "";
+
+	/**
+	 * The minimal versions of .NETFramework and .NETCoreApp implementing each .NETStandard version. -1 marks
+	 * versions not implemented by any .NETFramework.
+	 */
+	private static final int[][] STANDARD_IMPLEMENTATIONS = {
+			// netstandard,  net,                  netcoreapp
+			{version(1, 0, 0), version(4, 5, 0), version(1, 0, 0)},
+			{version(1, 1, 0), version(4, 5, 0), version(1, 0, 0)},
+			{version(1, 2, 0), version(4, 5, 1), version(1, 0, 0)},
+			{version(1, 3, 0), version(4, 6, 0), version(1, 0, 0)},
+			{version(1, 4, 0), version(4, 6, 1), version(1, 0, 0)},
+			{version(1, 5, 0), version(4, 6, 1), version(1, 0, 0)},
+			{version(1, 6, 0), version(4, 6, 1), version(1, 0, 0)},
+			{version(2, 0, 0), version(4, 6, 1), version(2, 0, 0)},
+			{version(2, 1, 0), -1, version(3, 0, 0)},
+	};
+
+	private static final int CACHE_SIZE = 1024;
+
+	private static final Map<String, Target> TARGETS = new LinkedHashMap<String, Target>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Target> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private static final Map<LookupKey, String> NEAREST = new LinkedHashMap<LookupKey, String>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<LookupKey, String> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private FrameworkCompatibility() {
+	}
+
+	/**
+	 * This method determines whether a project targeting the given framework can use a package target.
+	 *
+	 * @param project   the framework the project targets
+	 * @param candidate the target of the package - a folder name like net45 or a full name like .NETStandard2.0
+	 * @return true if the project can use the target
+	 */
+	public static boolean isCompatible(FrameworkVersion project, String candidate) {
+
+		return isCompatible(projectTarget(project), target(candidate));
+	}
+
+	/**
+	 * This method selects the package target that fits the given framework best. Targets of the same framework are
+	 * preferred to .NETStandard targets, which are preferred to portable profiles. Among those the highest version
+	 * wins.
+	 *
+	 * @param project    the framework the project targets
+	 * @param candidates the targets of the package - folder names like net45 or full names like .NETStandard2.0
+	 * @return the best target or null if the project can use none of them
+	 */
+	public static String nearest(FrameworkVersion project, Collection<String> candidates) {
+
+		Target projectTarget = projectTarget(project);
+
+		List<String> candidateList = candidates instanceof List ? (List<String>) candidates : new ArrayList<>(candidates);
+
+		String result;
+
+		synchronized (NEAREST) {
+
+			result = NEAREST.get(new LookupKey(projectTarget, candidateList));
+		}
+
+		if (result == null) {
+
+			result = computeNearest(projectTarget, candidateList);
+
+			synchronized (NEAREST) {
+
+				// the key keeps a copy, the given collection may change later.
+				NEAREST.put(new LookupKey(projectTarget, new ArrayList<>(candidateList)), result == null ? NO_RESULT : result);
+			}
+
+			return result;
+		}
+
+		return result.equals(NO_RESULT) ? null : result;
+	}
+
+	private static String computeNearest(Target project, List<String> candidates) {
+
+		String result = null;
+		int resultRank = Integer.MAX_VALUE;
+		int resultVersion = -1;
+
+		for (String candidate : candidates) {
+
+			Target target = target(candidate);
+
+			if (!isCompatible(project, target)) {
+
+				continue;
+			}
+
+			int rank = target.family.equals(project.family) ? 0 : target.family.equals(FAMILY_STANDARD) ? 1 : 2;
+
+			if (rank < resultRank || (rank == resultRank && target.version > resultVersion)) {
+
+				result = candidate;
+				resultRank = rank;
+				resultVersion = target.version;
+			}
+		}
+
+		return result;
+	}
+
+	private static boolean isCompatible(Target project, Target candidate) {
+
+		if (candidate.family == null || project.family == null) {
+
+			return false;
+		}
+
+		if (candidate.members != null) {
+
+			for (Target member : candidate.members) {
+
+				if (isCompatible(project, member)) {
+
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		if (candidate.platformSpecific) {
+
+			return false;
+		}
+
+		if (candidate.family.equals(project.family)) {
+
+			return candidate.version <= project.version;
+		}
+
+		if (!candidate.family.equals(FAMILY_STANDARD)) {
+
+			return false;
+		}
+
+		int column = project.family.equals(FAMILY_FRAMEWORK) ? 1 : project.family.equals(FAMILY_CORE) ? 2 : -1;
+
+		if (column < 0) {
+
+			return false;
+		}
+
+		for (int[] implementation : STANDARD_IMPLEMENTATIONS) {
+
+			if (implementation[0] >= candidate.version && implementation[column] >= 0 && implementation[column] <= project.version) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static Target projectTarget(FrameworkVersion project) {
+
+		String abbreviation = project.getAbbreviation().toLowerCase(Locale.ENGLISH);
+
+		return new Target(family(abbreviation, project.getMajor()),
+				version(project.getMajor(), project.getMinor(), project.getPatch()), false, null);
+	}
+
+	private static Target target(String candidate) {
+
+		Target result;
+
+		synchronized (TARGETS) {
+
+			result = TARGETS.get(candidate);
+		}
+
+		if (result == null) {
+
+			result = parse(candidate);
+
+			synchronized (TARGETS) {
+
+				TARGETS.put(candidate, result);
+			}
+		}
+
+		return result;
+	}
+
+	private static Target parse(String candidate) {
+
+		String value = candidate.trim().toLowerCase(Locale.ENGLISH);
+
+		if (value.startsWith(".")) {
+
+			value = value.substring(1);
+		}
+
+		if (value.startsWith("netframework")) {
+
+			value = FAMILY_FRAMEWORK + value.substring("netframework".length());
+		}
+
+		if (value.startsWith(FAMILY_PORTABLE) || value.startsWith("net" + FAMILY_PORTABLE)) {
+
+			return parsePortable(value);
+		}
+
+		FrameworkVersion version = FrameworkVersion.fromShortName(value);
+
+		if (version == null) {
+
+			return new Target(null, 0, false, null);
+		}
+
+		// e.g. net6.0-windows
+		boolean platformSpecific = value.indexOf('-') >= 0;
+
+		return new Target(family(version.getAbbreviation(), version.getMajor()),
+				version(version.getMajor(), version.getMinor(), version.getPatch()), platformSpecific, null);
+	}
+
+	/**
+	 * This method parses a portable profile given by its members: the folder name portable-net45+win8 or the full
+	 * name .NETPortable0.0-net45+win8, optionally with a version like portable40-net40+sl5. Profiles given by number
+	 * only, like .NETPortable4.5-Profile78, are not supported, since that would need the table of all profiles.
+	 */
+	private static Target parsePortable(String value) {
+
+		int index = value.startsWith(FAMILY_PORTABLE) ? FAMILY_PORTABLE.length() : ("net" + FAMILY_PORTABLE).length();
+
+		while (index < value.length() && (Character.isDigit(value.charAt(index)) || value.charAt(index) == '.')) {
+
+			index++;
+		}
+
+		if (index >= value.length() - 1 || value.charAt(index) != '-' || value.startsWith("profile", index + 1)) {
+
+			return new Target(null, 0, false, null);
+		}
+
+		List<Target> members = new ArrayList<>();
+
+		for (String member : value.substring(index + 1).split("\\+")) {
+
+			members.add(parse(member));
+		}
+
+		return new Target(FAMILY_PORTABLE, 0, false, members);
+	}
+
+	private static String family(String abbreviation, int major) {
+
+		if (abbreviation.equals(FAMILY_FRAMEWORK) && major >= 5) {
+
+			return FAMILY_CORE;
+		}
+
+		return abbreviation;
+	}
+
+	private static int version(int major, int minor, int patch) {
+
+		return (major * 100 + minor) * 100 + patch;
+	}
+
+	/**
+	 * This class holds a parsed target of a package.
+	 */
+	private static final class Target {
+
+		private final String family;
+		private final int version;
+		private final boolean platformSpecific;
+		private final List<Target> members;
+
+		private Target(String family, int version, boolean platformSpecific, List<Target> members) {
+			this.family = family;
+			this.version = version;
+			this.platformSpecific = platformSpecific;
+			this.members = members;
+		}
+	}
+
+	/**
+	 * This class is the key of a remembered lookup.
+	 */
+	private static final class LookupKey {
+
+		private final String family;
+		private final int version;
+		private final List<String> candidates;
+		private final int hashCode;
+
+		private LookupKey(Target project, List<String> candidates) {
+			this.family = project.family;
+			this.version = project.version;
+			this.candidates = candidates;
+			this.hashCode = (family.hashCode() * 31 + version) * 31 + candidates.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			LookupKey that = (LookupKey) o;
+			return version == that.version &&
+					family.equals(that.family) &&
+					candidates.equals(that.candidates);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
@@ -2,12 +2,12 @@ package io.github.miracelwhipp.net.provider;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * This class holds data about the version of a .Net framework
+ * This class holds data about the version of a .Net framework. Instances are interned - equal versions are the same
+ * instance.
  *
  * @author miracelwhipp
  */
@@ -15,17 +15,27 @@ public class FrameworkVersion {
 
 	private static final Map<String, String> FULL_NAME_BY_SHORT_NAME = new HashMap<>();
 
-	private static final Pattern VERSION_PATTERN =
-			Pattern.compile("(?<abbreviation>[a-zA-Z]*)" +
-					"(?:(?<longMajor>[0-9]+)\\.|(?<shortMajor>[0-9]))" +
-					"(?:(?<longMinor>[0-9]+)\\.|(?<shortMinor>[0-9]))" +
-					"(?:(?<longPatch>[0-9]+)\\.|(?<shortPatch>[0-9]))?(-(?<identifier>[0-9A-Za-z]+))*");
+	/**
+	 * Marks names that are no framework versions in {@link #BY_SHORT_NAME}.
+	 */
+	private static final FrameworkVersion NO_VERSION = new FrameworkVersion("", "", -1, -1, -1);
+
+	/**
+	 * The number of names remembered in {@link #BY_SHORT_NAME}. Folder names and classifiers are arbitrary strings,
+	 * the versions they denote are few.
+	 */
+	private static final int SHORT_NAME_CACHE_SIZE = 1024;
+
+	private static final ConcurrentMap<FrameworkVersion, FrameworkVersion> INSTANCES = new ConcurrentHashMap<>();
+
+	private static final ConcurrentMap<String, FrameworkVersion> BY_SHORT_NAME = new ConcurrentHashMap<>();
 
 	private final String name;
 	private final String abbreviation;
 	private final int major;
 	private final int minor;
 	private final int patch;
+	private final int hashCode;
 
 	private FrameworkVersion(String name, String abbreviation, int major, int minor, int patch) {
 		this.name = name;
@@ -33,6 +43,7 @@ public class FrameworkVersion {
 		this.major = major;
 		this.minor = minor;
 		this.patch = patch;
+		this.hashCode = (((name.hashCode() * 31 + abbreviation.hashCode()) * 31 + major) * 31 + minor) * 31 + patch;
 	}
 
 	public String getName() {
@@ -93,27 +104,28 @@ public class FrameworkVersion {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		FrameworkVersion that = (FrameworkVersion) o;
-		return major == that.major &&
+		return hashCode == that.hashCode &&
+				major == that.major &&
 				minor == that.minor &&
 				patch == that.patch &&
-				Objects.equals(name, that.name) &&
-				Objects.equals(abbreviation, that.abbreviation);
+				name.equals(that.name) &&
+				abbreviation.equals(that.abbreviation);
 	}
 
 	@Override
 	public int hashCode() {
 
-		return Objects.hash(name, abbreviation, major, minor, patch);
+		return hashCode;
 	}
 
 	public boolean isDownwardsCompatible(FrameworkVersion other) {
 
-		if (!Objects.equals(name, other.name)) {
+		if (!name.equals(other.name)) {
 
 			return false;
 		}
 
-		if (!Objects.equals(abbreviation, other.abbreviation)) {
+		if (!abbreviation.equals(other.abbreviation)) {
 
 			return false;
 		}
@@ -159,54 +171,159 @@ public class FrameworkVersion {
 		}
 
 
-		return new FrameworkVersion(name, abbreviation, major, minor, patch);
+		return intern(new FrameworkVersion(name, abbreviation, major, minor, patch));
 	}
 
 	public static FrameworkVersion defaultVersion() {
 
-		return new FrameworkVersion(".NETStandard", "netstandard", 2, 0, 0);
+		return intern(new FrameworkVersion(".NETStandard", "netstandard", 2, 0, 0));
 	}
 
-	public static FrameworkVersion fromShortName(String value) {
+	private static FrameworkVersion intern(FrameworkVersion version) {
 
-		Matcher matcher = VERSION_PATTERN.matcher(value);
+		FrameworkVersion result = INSTANCES.putIfAbsent(version, version);
+
+		return result == null ? version : result;
+	}
+
+	/**
+	 * This method parses a short framework name as used for the folders in nuget packages, e.g. net472, net4.7.2,
+	 * netstandard2.0, netcoreapp3.1 or net6.0-windows. The version consists of two or three parts. A part is either a
+	 * single digit or a number followed by a dot. The version may be followed by identifiers separated by dashes,
+	 * which are ignored.
+	 *
+	 * @param value the short name
+	 * @return the framework version or null if the value is no short framework name
+	 */
+	public static FrameworkVersion fromShortName(String value) {
 
-		if (!matcher.matches()) {
+		if (value == null) {
 
 			return null;
 		}
 
-		String abbreviation = matcher.group("abbreviation");
+		FrameworkVersion result = BY_SHORT_NAME.get(value);
 
-		try {
+		if (result == null) {
+
+			result = parseShortName(value);
+
+			if (BY_SHORT_NAME.size() >= SHORT_NAME_CACHE_SIZE) {
+
+				// the names are parsed again on demand and map to the same interned versions.
+				BY_SHORT_NAME.clear();
+			}
 
-			int major = getArgument(matcher, "Major");
-			int minor = getArgument(matcher, "Minor");
-			int patch = getArgument(matcher, "Patch");
+			BY_SHORT_NAME.putIfAbsent(value, result == null ? NO_VERSION : result);
 
-			return newInstance(getFullName(abbreviation), abbreviation, major, minor, patch);
+			return result;
+		}
+
+		return result == NO_VERSION ? null : result;
+	}
 
-		} catch (NumberFormatException e) {
+	private static FrameworkVersion parseShortName(String value) {
+
+		int position = 0;
+
+		while (position < value.length() && isLetter(value.charAt(position))) {
+
+			position++;
+		}
+
+		String abbreviation = value.substring(0, position);
+
+		int[] parts = new int[3];
+
+		if (!matchParts(value, position, 0, parts)) {
 
 			return null;
 		}
+
+		return newInstance(getFullName(abbreviation), abbreviation, parts[0], parts[1], parts[2]);
 	}
 
-	private static int getArgument(Matcher matcher, String name) {
+	/**
+	 * This method matches the version parts starting at the given position. If a part is a number followed by a dot,
+	 * it may still be the single digit form followed by further parts, so both forms are tried.
+	 */
+	private static boolean matchParts(String value, int position, int part, int[] parts) {
 
-		String result = matcher.group("long" + name);
+		if (part == parts.length) {
 
-		if (result == null) {
+			return matchIdentifiers(value, position);
+		}
+
+		int end = position;
 
-			result = matcher.group("short" + name);
+		while (end < value.length() && isDigit(value.charAt(end))) {
+
+			end++;
 		}
 
-		if (result == null) {
+		if (end > position && end < value.length() && value.charAt(end) == '.' && end - position <= 9
+				&& matchParts(value, end + 1, part + 1, parts)) {
+
+			parts[part] = Integer.parseInt(value.substring(position, end));
+			return true;
+		}
+
+		if (end > position && matchParts(value, position + 1, part + 1, parts)) {
+
+			parts[part] = value.charAt(position) - '0';
+			return true;
+		}
 
-			return 0;
+		// the patch is optional.
+		if (part == 2 && matchIdentifiers(value, position)) {
+
+			parts[part] = 0;
+			return true;
 		}
 
-		return Integer.parseInt(result);
+		return false;
+	}
+
+	private static boolean matchIdentifiers(String value, int position) {
+
+		while (position < value.length()) {
+
+			if (value.charAt(position) != '-') {
+
+				return false;
+			}
+
+			int start = ++position;
+
+			while (position < value.length() && value.charAt(position) != '-') {
+
+				char character = value.charAt(position);
+
+				if (!isLetter(character) && !isDigit(character) && character != '.') {
+
+					return false;
+				}
+
+				position++;
+			}
+
+			if (position == start) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isLetter(char character) {
+
+		return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z');
+	}
+
+	private static boolean isDigit(char character) {
+
+		return character >= '0' && character <= '9';
 	}
 
 	private static String getFullName(String shortName) {
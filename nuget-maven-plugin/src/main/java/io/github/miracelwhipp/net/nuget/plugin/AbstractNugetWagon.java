@@ -1,8 +1,9 @@
 package io.github.miracelwhipp.net.nuget.plugin;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.miracelwhipp.net.common.LockTable;
 import io.github.miracelwhipp.net.common.Streams;
 import io.github.miracelwhipp.net.common.Xml;
+import io.github.miracelwhipp.net.provider.FrameworkCompatibility;
 import io.github.miracelwhipp.net.provider.FrameworkVersion;
 import io.github.miracelwhipp.net.provider.NetFrameworkProvider;
 import org.apache.commons.io.FileUtils;
@@ -22,16 +23,16 @@ import org.codehaus.plexus.logging.Logger;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.UUID;
 
 /**
  * This abstract class collects functionality to use nuget to download maven artifacts.
@@ -46,32 +47,92 @@ public abstract class AbstractNugetWagon implements Wagon {
 	public static final String SUFFIX_MD5 = ".md5";
 	public static final String BUILD_DIRECTORY = "build/";
 
+	private static final URL NUSPEC_TO_POM = AbstractNugetWagon.class.getResource("/nuspec-to-pom.xsl");
+
 	protected abstract Wagon getDelegate();
 
+	protected abstract Wagon pinDelegate() throws TransferFailedException;
+
 	protected abstract NugetPackageDownloadManager getDownloadManager();
 
 	protected abstract Logger getLogger();
 
 	protected abstract FrameworkVersion getDefaultFrameworkVersion();
 
+	protected abstract NugetWagonConfiguration getConfiguration();
+
+	protected abstract DependencyPrefetcher getPrefetcher();
+
+	protected abstract PackageIndexCache getIndexCache();
+
+	protected abstract ServiceIndexResolver getServiceIndexResolver();
+
+	protected abstract RegistrationCache getRegistrationCache();
+
+	protected abstract ChecksumCache getChecksumCache();
+
+	protected abstract ContentStore getContentStore();
+
+	protected abstract WagonStatistics getStatistics();
+
+	private final LockTable packageLocks = new LockTable();
+
 	@Override
-	public synchronized void get(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+	public void get(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
 
-		getLogger().debug("nuget download for " + resourceName + " to " + destination.getAbsolutePath());
+		if (getConfiguration().getConcurrencyMode() == NugetWagonConfiguration.ConcurrencyMode.WAGON) {
+
+			synchronized (this) {
 
-		if (resourceName.endsWith(".sha1")) {
+				getResource(resourceName, destination);
+			}
 
-			getLogger().debug("resource is sha1 hash. not supported.");
-			throw new ResourceDoesNotExistException("sha1 not supported.");
+			return;
 		}
 
-		if (resourceName.endsWith(SUFFIX_MD5)) {
+		getResource(resourceName, destination);
+	}
 
-			getLogger().debug("resource is md5 hash.");
-			getDownloadManager().getMd5Hash(getRepository(), NugetArtifact.fromMavenResourceString(resourceName.substring(0, resourceName.length() - SUFFIX_MD5.length())), destination);
+	@Override
+	public boolean getIfNewer(String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		if (getConfiguration().getConcurrencyMode() == NugetWagonConfiguration.ConcurrencyMode.WAGON) {
+
+			synchronized (this) {
+
+				return getResourceIfNewer(resourceName, destination, timestamp);
+			}
+		}
+
+		return getResourceIfNewer(resourceName, destination, timestamp);
+	}
+
+	private void getResource(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		getLogger().debug("nuget download for " + resourceName + " to " + destination.getAbsolutePath());
+
+		if (ChecksumCache.isChecksum(resourceName)) {
+
+			getChecksum(resourceName, destination);
 			return;
 		}
 
+		long start = getStatistics().start();
+
+		try {
+
+			provideResource(resourceName, destination);
+
+		} finally {
+
+			getStatistics().stop(WagonStatistics.Phase.RESOURCE, start, resourceName);
+		}
+
+		recordChecksums(resourceName, destination);
+	}
+
+	private void provideResource(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
 		NugetArtifact nugetArtifact = NugetArtifact.fromMavenResourceString(resourceName);
 
 		if (nugetArtifact.isNugetFile()) {
@@ -85,10 +146,9 @@ public abstract class AbstractNugetWagon implements Wagon {
 
 			getLogger().debug("resource is meta data only.");
 
-			File jsonFile = new File(destination.getAbsolutePath() + ".json");
-			getDownloadManager().getNugetFile(getDelegate(), nugetArtifact, jsonFile);
+			File jsonFile = getIndexCache().getIndex(getDelegate(), nugetArtifact);
 
-			transformResult(jsonFile, nugetArtifact, destination);
+			transformResultLocked(jsonFile, nugetArtifact, nugetArtifact, destination);
 			return;
 		}
 
@@ -96,23 +156,52 @@ public abstract class AbstractNugetWagon implements Wagon {
 
 		getLogger().debug("corresponding artifact is " + downloadArtifact);
 
+		File registrationSpecification = registrationSpecification(nugetArtifact);
+
+		if (registrationSpecification != null) {
+
+			transformResultLocked(registrationSpecification, nugetArtifact, downloadArtifact, destination);
+			return;
+		}
+
 		File downloadPackageFile = downloadPackageFile(downloadArtifact, nugetArtifact, destination);
 
 		getDownloadManager().get(getDelegate(), downloadArtifact, downloadPackageFile);
 
-		transformResult(downloadPackageFile, nugetArtifact, destination);
+		transformResultLocked(downloadPackageFile, nugetArtifact, downloadArtifact, destination);
 	}
 
-	@Override
-	public synchronized boolean getIfNewer(String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+	private boolean getResourceIfNewer(String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
 
 		getLogger().debug("nuget download for " + resourceName + " to " + destination.getAbsolutePath());
 
-		if (resourceName.endsWith(".md5") || resourceName.endsWith(".sha1")) {
+		if (ChecksumCache.isChecksum(resourceName)) {
 
-			throw new ResourceDoesNotExistException("checksums not supported yet");
+			getChecksum(resourceName, destination);
+			return true;
 		}
 
+		long start = getStatistics().start();
+
+		try {
+
+			if (!provideResourceIfNewer(resourceName, destination, timestamp)) {
+
+				return false;
+			}
+
+		} finally {
+
+			getStatistics().stop(WagonStatistics.Phase.RESOURCE, start, resourceName);
+		}
+
+		recordChecksums(resourceName, destination);
+
+		return true;
+	}
+
+	private boolean provideResourceIfNewer(String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
 		NugetArtifact nugetArtifact = NugetArtifact.fromMavenResourceString(resourceName);
 
 		if (nugetArtifact.isNugetFile()) {
@@ -126,16 +215,15 @@ public abstract class AbstractNugetWagon implements Wagon {
 
 			getLogger().debug("resource is meta data only.");
 
-			File jsonFile = new File(destination.getAbsolutePath() + ".json");
+			File jsonFile = getIndexCache().getIndex(getDelegate(), nugetArtifact);
 
-			boolean result = getDownloadManager().getIfNewer(getDelegate(), nugetArtifact, jsonFile, timestamp);
-
-			if (!result) {
+			if (jsonFile.lastModified() <= timestamp) {
 
+				getLogger().debug("index did not change since " + timestamp + ".");
 				return false;
 			}
 
-			transformResult(jsonFile, nugetArtifact, destination);
+			transformResultLocked(jsonFile, nugetArtifact, nugetArtifact, destination);
 
 			return true;
 		}
@@ -145,6 +233,19 @@ public abstract class AbstractNugetWagon implements Wagon {
 
 		getLogger().debug("corresponding artifact is " + downloadArtifact);
 
+		File registrationSpecification = registrationSpecification(nugetArtifact);
+
+		if (registrationSpecification != null) {
+
+			if (registrationSpecification.lastModified() <= timestamp) {
+
+				return false;
+			}
+
+			transformResultLocked(registrationSpecification, nugetArtifact, downloadArtifact, destination);
+			return true;
+		}
+
 		File downloadPackageFile = downloadPackageFile(downloadArtifact, nugetArtifact, destination);
 
 		boolean result = getDownloadManager().getIfNewer(getDelegate(), downloadArtifact, downloadPackageFile, timestamp);
@@ -154,25 +255,101 @@ public abstract class AbstractNugetWagon implements Wagon {
 			return false;
 		}
 
-		transformResult(downloadPackageFile, nugetArtifact, destination);
+		transformResultLocked(downloadPackageFile, nugetArtifact, downloadArtifact, destination);
 
 		return true;
 	}
 
-	private File downloadPackageFile(NugetArtifact downloadArtifact, NugetArtifact artifact, File destination) {
+	/**
+	 * This method provides the checksum of a resource provided before. Only the md5 hash of a nuget file that was not
+	 * provided in this session is asked from the repository.
+	 */
+	private void getChecksum(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException {
 
-		String groupIdPath = getGroupIdPath(artifact.getGroupId());
+		long start = getStatistics().start();
 
-		String artifactPath = groupIdPath + File.separator + artifact.getArtifactId() + File.separator + artifact.getVersion();
+		try {
 
-		String destinationString = destination.getAbsolutePath();
-//		String destinationString = destination.getAbsolutePath().toLowerCase(Locale.ENGLISH);
+			provideChecksum(resourceName, destination);
 
-		int artifactPosition = destinationString.lastIndexOf(artifactPath);
+		} finally {
+
+			getStatistics().stop(WagonStatistics.Phase.CHECKSUM, start, resourceName);
+		}
+	}
+
+	private void provideChecksum(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException {
+
+		try {
+
+			if (getChecksumCache().provide(getRepository().getUrl(), resourceName, destination)) {
+
+				getLogger().debug("checksum " + resourceName + " provided locally.");
+				getStatistics().hit(WagonStatistics.Cache.CHECKSUM);
+				return;
+			}
+
+		} catch (IOException e) {
+
+			throw new TransferFailedException(e.getMessage(), e);
+		}
+
+		getStatistics().miss(WagonStatistics.Cache.CHECKSUM);
+
+		if (resourceName.endsWith(ChecksumCache.SUFFIX_MD5)) {
+
+			getLogger().debug("resource is md5 hash.");
+			getDownloadManager().getMd5Hash(getRepository(), NugetArtifact.fromMavenResourceString(resourceName.substring(0, resourceName.length() - SUFFIX_MD5.length())), destination);
+			return;
+		}
 
-		File repositoryDirectory = new File(destinationString.substring(0, artifactPosition));
+		throw new ResourceDoesNotExistException("no checksum known for " + resourceName);
+	}
+
+	private void recordChecksums(String resourceName, File destination) {
+
+		if (!destination.isFile()) {
+
+			return;
+		}
+
+		try {
+
+			getChecksumCache().store(getRepository().getUrl(), resourceName, destination);
 
-		File result = repositoryDirectory.toPath().resolve(
+		} catch (IOException e) {
+
+			getLogger().debug("unable to compute checksums of " + destination.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * This method provides a nuspec file created from the registration of the feed, if poms are to be created that
+	 * way.
+	 *
+	 * @return the nuspec file or null if the nuspec file has to be downloaded
+	 */
+	private File registrationSpecification(NugetArtifact nugetArtifact) {
+
+		if (!nugetArtifact.isPom() || getConfiguration().getDependencyMetadata() != NugetWagonConfiguration.DependencyMetadata.REGISTRATION) {
+
+			return null;
+		}
+
+		ServiceIndex serviceIndex = getServiceIndexResolver().forPackageBaseAddress(getRepository().getUrl());
+
+		if (serviceIndex == null || serviceIndex.getRegistrationsBaseUrl() == null) {
+
+			getLogger().debug("repository " + getRepository().getUrl() + " provides no registration. using nuspec.");
+			return null;
+		}
+
+		return getRegistrationCache().getSpecification(getDelegate(), serviceIndex.getRegistrationsBaseUrl(), nugetArtifact);
+	}
+
+	private File downloadPackageFile(NugetArtifact downloadArtifact, NugetArtifact artifact, File destination) {
+
+		File result = repositoryDirectory(artifact, destination).toPath().resolve(
 				downloadArtifact.getWagonArtifact().getArtifactFilename().toPath()).toFile();
 
 		getLogger().debug("download package file is " + result.getAbsolutePath());
@@ -180,8 +357,18 @@ public abstract class AbstractNugetWagon implements Wagon {
 		return result;
 	}
 
-	private String getGroupIdPath(String groupId) {
-		return groupId.replaceAll("\\.", Matcher.quoteReplacement(File.separator));
+	private File repositoryDirectory(NugetArtifact artifact, File destination) {
+
+		String groupIdPath = artifact.getWagonArtifact().getGroupIdPath();
+
+		String artifactPath = groupIdPath + File.separator + artifact.getArtifactId() + File.separator + artifact.getVersion();
+
+		String destinationString = destination.getAbsolutePath();
+//		String destinationString = destination.getAbsolutePath().toLowerCase(Locale.ENGLISH);
+
+		int artifactPosition = destinationString.lastIndexOf(artifactPath);
+
+		return new File(destinationString.substring(0, artifactPosition));
 	}
 
 	@Override
@@ -196,6 +383,24 @@ public abstract class AbstractNugetWagon implements Wagon {
 		return getDelegate().getFileList(destinationDirectory);
 	}
 
+	private void transformResultLocked(File downloadPackageFile, NugetArtifact nugetArtifact, NugetArtifact packageArtifact, File destination) throws TransferFailedException, ResourceDoesNotExistException {
+
+		String key = packageArtifact.resourceString();
+
+		getLogger().debug("Acquiring package lock for " + key + "...");
+
+		long lockStart = getStatistics().start();
+
+		try (LockTable.Lock ignored = packageLocks.lock(key)) {
+
+			getStatistics().stop(WagonStatistics.Phase.PACKAGE_LOCK_WAIT, lockStart, key);
+
+			getLogger().debug("Package lock acquired for " + key + "...");
+
+			transformResult(downloadPackageFile, nugetArtifact, destination);
+		}
+	}
+
 	private void transformResult(File downloadPackageFile, NugetArtifact nugetArtifact, File destination) throws TransferFailedException, ResourceDoesNotExistException {
 
 		getLogger().debug("transforming result. downloadPackageFile : " + downloadPackageFile.getAbsolutePath() + " nuget artifact : " + nugetArtifact + " destination " + destination.getAbsolutePath());
@@ -224,7 +429,7 @@ public abstract class AbstractNugetWagon implements Wagon {
 			return;
 		}
 
-		if (nugetArtifact.getType().equals("dll")) {
+		if (nugetArtifact.getType().equals(NugetArtifact.TYPE_DLL)) {
 
 			getLogger().debug("extracting library.");
 
@@ -247,87 +452,32 @@ public abstract class AbstractNugetWagon implements Wagon {
 
 	private void transFormToMetaDataXml(NugetArtifact nugetArtifact, File jsonFile, File destination) throws TransferFailedException {
 
-		try {
-			ObjectMapper mapper = new ObjectMapper();
-
-			NugetMetadata nugetMetadata = mapper.readValue(jsonFile, NugetMetadata.class);
-
-			StringBuilder builder = new StringBuilder();
-
-			builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-					"<metadata modelVersion=\"1.1.0\">\n" +
-					"  <groupId>");
-
-			builder.append(nugetArtifact.getGroupId());
-
-			builder.append("</groupId>\n" +
-					"  <artifactId>");
-
-			builder.append(nugetArtifact.getArtifactId());
-
-			builder.append("</artifactId>\n" +
-					"  <versioning>\n");
-
-			if (!nugetMetadata.getVersions().isEmpty()) {
-				builder.append("    <latest>");
-				builder.append(nugetMetadata.getVersions().get(nugetMetadata.getVersions().size() - 1));
-				builder.append("</latest>\n");
-			}
-
-			String releaseVersion = findReleaseVersion(nugetMetadata);
-
-			if (releaseVersion != null) {
-
-				builder.append("    <release>");
-				builder.append(releaseVersion);
-				builder.append("</release>\n");
-			}
-
-			builder.append("    <versions>\n");
-
-			for (String version : nugetMetadata.getVersions()) {
-
-				builder.append("      <version>");
-				builder.append(version);
-				builder.append("</version>\n");
-			}
+		long start = getStatistics().start();
 
+		try {
 
-			builder.append("    </versions>\n" +
-//					"    <lastUpdated>20171020062041</lastUpdated>\n" +
-					"  </versioning>\n" +
-					"</metadata>\n");
+			MetadataXmlWriter.write(jsonFile, destination, nugetArtifact.getGroupId(), nugetArtifact.getArtifactId());
 
-			FileUtils.write(destination, builder.toString(), StandardCharsets.UTF_8);
+			getStatistics().stop(WagonStatistics.Phase.METADATA, start, nugetArtifact.resourceString(), destination);
 
 		} catch (IOException e) {
 
 			throw new TransferFailedException(e.getMessage(), e);
 		}
-
 	}
 
-	private String findReleaseVersion(NugetMetadata nugetMetadata) {
+	private void extractTool(File downloadPackageFile, NugetArtifact nugetArtifact, File destination) throws TransferFailedException, ResourceDoesNotExistException {
 
-		for (int index = nugetMetadata.getVersions().size() - 1; index >= 0; index--) {
+		try {
 
-			String version = nugetMetadata.getVersions().get(index);
+			long start = getStatistics().start();
 
-			if (version.matches("[0-9]+(\\.[0-9]+)*")) {
+			String entry = existingPath(NugetPackageIndex.forPackage(downloadPackageFile), TOOLS_DIRECTORY + nugetArtifact.artifactName());
 
-				return version;
-			}
+			File file = Streams.extractForFile(downloadPackageFile, entry == null ? TOOLS_DIRECTORY + nugetArtifact.artifactName() : entry,
+					getConfiguration().isLockAcrossProcesses());
 
-		}
-
-		return null;
-	}
-
-	private void extractTool(File downloadPackageFile, NugetArtifact nugetArtifact, File destination) throws TransferFailedException, ResourceDoesNotExistException {
-
-		try {
-
-			File file = Streams.unpackForFile(downloadPackageFile, new File(TOOLS_DIRECTORY, nugetArtifact.artifactName()));
+			getStatistics().stop(WagonStatistics.Phase.UNPACK, start, nugetArtifact.getWagonArtifact().mavenResourceString(), file);
 
 			provideUnpackedFile(destination, file);
 
@@ -351,10 +501,21 @@ public abstract class AbstractNugetWagon implements Wagon {
 
 		try {
 
-			getLogger().debug("unpacking " + downloadPackageFile.getAbsolutePath() + " in order to get file " + nugetArtifact.specificationFile().getAbsolutePath());
-			File specification = Streams.unpackForFile(downloadPackageFile, nugetArtifact.specificationFile());
+			long start = getStatistics().start();
+
+			getLogger().debug("reading index of " + downloadPackageFile.getAbsolutePath());
+			NugetPackageIndex index = NugetPackageIndex.forPackage(downloadPackageFile);
+
+			String entry = findLibrary(nugetArtifact, desiredVersion, index);
 
-			File file = findLibrary(nugetArtifact, desiredVersion, specification, specification.getParentFile());
+			getStatistics().stop(WagonStatistics.Phase.SELECT_LIBRARY, start, nugetArtifact.getWagonArtifact().mavenResourceString());
+
+			start = getStatistics().start();
+
+			getLogger().debug("extracting " + entry + " from " + downloadPackageFile.getAbsolutePath());
+			File file = Streams.extractForFile(downloadPackageFile, entry, getConfiguration().isLockAcrossProcesses());
+
+			getStatistics().stop(WagonStatistics.Phase.UNPACK, start, nugetArtifact.getWagonArtifact().mavenResourceString(), file);
 
 			provideUnpackedFile(destination, file);
 
@@ -376,50 +537,45 @@ public abstract class AbstractNugetWagon implements Wagon {
 		return result;
 	}
 
-	private File findLibrary(final NugetArtifact nugetArtifact, final FrameworkVersion desiredVersion,
-	                         File specification, File directory) throws ResourceDoesNotExistException {
-
-		File libraryDirectory = new File(directory, LIBRARY_DIRECTORY);
+	private String findLibrary(final NugetArtifact nugetArtifact, final FrameworkVersion desiredVersion,
+	                           NugetPackageIndex index) throws ResourceDoesNotExistException {
 
-		File result = new File(
-				new File(libraryDirectory, desiredVersion.versionedToken()), nugetArtifact.artifactName());
+		String result = existingPath(index, LIBRARY_DIRECTORY + desiredVersion.versionedToken() + "/" + nugetArtifact.artifactName());
 
-		if (result.exists()) {
+		if (result != null) {
 
 			return result;
 		}
 
-		result = searchDirectoryForVersionedFile(nugetArtifact, desiredVersion, libraryDirectory);
+		result = searchDirectoryForVersionedFile(nugetArtifact, desiredVersion, LIBRARY_DIRECTORY, index);
 
-		if (result == null) {
+		if (result != null) {
 
-			result = new File(new File(directory, TOOLS_DIRECTORY), nugetArtifact.artifactName());
+			return result;
 		}
 
-		if (result.exists()) {
+		result = existingPath(index, TOOLS_DIRECTORY + nugetArtifact.artifactName());
+
+		if (result != null) {
 
 			return result;
 		}
 
-		result = searchDirectoryForVersionedFile(
-				nugetArtifact, desiredVersion, new File(directory, REFERENCES_DIRECTORY));
+		result = searchDirectoryForVersionedFile(nugetArtifact, desiredVersion, REFERENCES_DIRECTORY, index);
 
 		if (result != null) {
 
 			return result;
 		}
 
-		File buildDirectory = new File(directory, BUILD_DIRECTORY);
+		result = existingPath(index, BUILD_DIRECTORY + desiredVersion.versionedToken() + "/" + REFERENCES_DIRECTORY + nugetArtifact.artifactName());
 
-		result = new File(new File(new File(buildDirectory,
-				desiredVersion.versionedToken()), REFERENCES_DIRECTORY), nugetArtifact.artifactName());
-
-		if (result.exists()) {
+		if (result != null) {
 
 			return result;
 		}
 
-		result = searchDirectoryForVersionedFile(nugetArtifact, desiredVersion, buildDirectory);
+		result = searchDirectoryForVersionedFile(nugetArtifact, desiredVersion, BUILD_DIRECTORY, index);
 
 		if (result == null) {
 
@@ -429,97 +585,162 @@ public abstract class AbstractNugetWagon implements Wagon {
 		return result;
 	}
 
-	private File searchDirectoryForVersionedFile(
-			final NugetArtifact nugetArtifact, FrameworkVersion desiredVersion, File directory) {
+	/**
+	 * This method returns the path of the given file as stored in the package, since the index ignores the case of
+	 * paths but the package does not.
+	 */
+	private static String existingPath(NugetPackageIndex index, String path) {
 
-		File[] directories = directory.listFiles(new FileFilter() {
-			@Override
-			public boolean accept(File pathname) {
+		NugetPackageIndex.Entry entry = index.getEntry(path);
 
-				if (!pathname.isDirectory()) {
+		return entry == null ? null : entry.getPath();
+	}
 
-					return false;
-				}
+	private String searchDirectoryForVersionedFile(
+			final NugetArtifact nugetArtifact, FrameworkVersion desiredVersion, String directory, NugetPackageIndex index) {
 
-				if (!new File(pathname, nugetArtifact.artifactName()).exists()) {
+		List<NugetPackageIndex.Entry> entries = index.findInFrameworkFolders(directory, nugetArtifact.artifactName());
+		List<String> frameworkFolders = new ArrayList<>(entries.size());
 
-					return false;
-				}
+		for (NugetPackageIndex.Entry entry : entries) {
 
-				return true;
-			}
-		});
+			frameworkFolders.add(entry.getFrameworkFolder());
+		}
+
+		String frameworkFolder = FrameworkCompatibility.nearest(desiredVersion, frameworkFolders);
 
-		if (directories == null) {
+		if (frameworkFolder == null) {
 
 			return null;
 		}
 
-		FrameworkVersion extractedVersion = null;
+		getLogger().debug("nearest framework of " + desiredVersion.versionedShortName() + " in " + directory + " is " + frameworkFolder);
 
-		for (File pathname : directories) {
+		return entries.get(frameworkFolders.indexOf(frameworkFolder)).getPath();
+	}
 
-			FrameworkVersion currentVersion = FrameworkVersion.fromShortName(pathname.getName());
+	private void provideUnpackedFile(File destination, File file) throws TransferFailedException, IOException, ResourceDoesNotExistException {
 
-			if (currentVersion == null) {
+		long start = getStatistics().start();
 
-				continue;
-			}
+		if (file.exists()) {
 
-			if (!desiredVersion.isDownwardsCompatible(currentVersion)) {
+			if (getConfiguration().isContentStore()) {
 
-				continue;
+				getContentStore().deduplicate(file);
 			}
 
-			if (extractedVersion != null && !currentVersion.isDownwardsCompatible(extractedVersion)) {
+			if (destination.exists() && !destination.delete()) {
 
-				continue;
+				throw new TransferFailedException("cannot delete file " + destination.getAbsolutePath());
 			}
 
-			extractedVersion = currentVersion;
-		}
+			FileUtils.forceMkdir(destination.getParentFile());
 
-		if (extractedVersion == null) {
+			try {
 
-			return null;
-		}
+				Files.createLink(destination.toPath(), file.toPath());
 
-		return new File(
-				new File(directory, extractedVersion.versionedToken()), nugetArtifact.artifactName());
-	}
+			} catch (IOException | UnsupportedOperationException e) {
 
-	private void provideUnpackedFile(File destination, File file) throws TransferFailedException, IOException, ResourceDoesNotExistException {
-
-		if (file.exists()) {
+				// e.g. the local repository spans several devices or the file system does not support hard links.
+				getLogger().debug("unable to link " + destination.getAbsolutePath() + ". copying.", e);
 
-			if (destination.exists() && !destination.delete()) {
+				File tempFile = new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
 
-				throw new TransferFailedException("cannot delete file " + destination.getAbsolutePath());
-			}
+				try {
 
-			FileUtils.forceMkdir(destination.getParentFile());
+					Streams.copyFile(file, tempFile);
+					Files.move(tempFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
+				} finally {
 
-			Files.createLink(destination.toPath(), file.toPath());
+					FileUtils.deleteQuietly(tempFile);
+				}
+			}
 
 		} else {
 
 			throw new ResourceDoesNotExistException("no compatible artifact found in nuget package");
 		}
+
+		getStatistics().stop(WagonStatistics.Phase.LINK, start, destination.getName(), destination);
 	}
 
 	private void transFormToPom(File sourceFile, File destination, NugetArtifact nugetArtifact) throws TransferFailedException {
 
-		try (InputStream source = AbstractNugetWagon.class.getResourceAsStream("/nuspec-to-pom.xsl")) {
+		String artifact = nugetArtifact.getWagonArtifact().mavenResourceString();
+
+		try {
+
+			long start = getStatistics().start();
+
+			String targetFramework = selectTargetFramework(sourceFile, getFrameworkVersion(nugetArtifact));
+
+			getStatistics().stop(WagonStatistics.Phase.SELECT_DEPENDENCY_GROUP, start, artifact);
+
+			start = getStatistics().start();
+
+			List<NuspecToPomConverter.Dependency> dependencies = null;
+
+			if (getConfiguration().getPomConverter() == NugetWagonConfiguration.PomConverter.STAX) {
+
+				dependencies = NuspecToPomConverter.convert(sourceFile, destination, targetFramework);
+
+			} else {
+
+				Xml.transformFile(sourceFile, Xml.getTemplates(NUSPEC_TO_POM), destination, false, new TargetFrameworkParameterSetter(targetFramework));
+			}
+
+			getStatistics().stop(WagonStatistics.Phase.POM, start, artifact, destination);
+
+			if (getConfiguration().isPrefetch()) {
 
-			Xml.transformFile(sourceFile, new StreamSource(source), destination, false, new TargetFrameworkParameterSetter(getFrameworkVersion(nugetArtifact).versionedFullName()));
+				if (dependencies == null) {
 
-		} catch (IOException | ParserConfigurationException | TransformerException | SAXException e) {
+					dependencies = NuspecToPomConverter.readDependencies(sourceFile, targetFramework);
+				}
+
+				prefetchDependencies(nugetArtifact, destination, dependencies);
+			}
+
+		} catch (IOException | ParserConfigurationException | TransformerException | SAXException | XMLStreamException e) {
 
 			throw new TransferFailedException(e.getMessage(), e);
 		}
 	}
 
+	private void prefetchDependencies(NugetArtifact nugetArtifact, File pomFile, List<NuspecToPomConverter.Dependency> dependencies) {
+
+		try {
+
+			getPrefetcher().prefetchDependencies(pinDelegate(), dependencies, repositoryDirectory(nugetArtifact, pomFile));
+
+		} catch (TransferFailedException e) {
+
+			getLogger().debug("unable to prefetch dependencies of " + nugetArtifact.resourceString() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * This method selects the dependency group of the nuspec file that fits the desired framework best.
+	 *
+	 * @return the target framework of the group or the full name of the desired framework if no group fits
+	 */
+	private String selectTargetFramework(File sourceFile, FrameworkVersion desiredVersion) throws IOException, XMLStreamException {
+
+		String result = FrameworkCompatibility.nearest(desiredVersion, NuspecToPomConverter.readTargetFrameworks(sourceFile));
+
+		if (result == null) {
+
+			return desiredVersion.versionedFullName();
+		}
+
+		getLogger().debug("nearest dependency group of " + desiredVersion.versionedShortName() + " is " + result);
+
+		return result;
+	}
+
 	@Override
 	public void put(File source, String destination) throws
 			TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
@@ -545,20 +766,36 @@ public abstract class AbstractNugetWagon implements Wagon {
 	@Override
 	public void connect(Repository source) throws ConnectionException, AuthenticationException {
 
-		adaptRepository(source);
+		adaptRepository(source, new ConnectionArguments(null, null, null));
 
 		getDelegate().connect(source);
 	}
 
-	private void adaptRepository(Repository source) {
+	private void adaptRepository(Repository source, ConnectionArguments connection) throws ConnectionException {
 
 		source.setUrl(source.getUrl().replaceFirst("nuget://", "https://"));
+
+		if (!ServiceIndexResolver.isServiceIndex(source.getUrl())) {
+
+			return;
+		}
+
+		ServiceIndex serviceIndex = getServiceIndexResolver().resolve(source, connection);
+
+		if (serviceIndex.getPackageBaseAddress() == null) {
+
+			throw new ConnectionException("service index " + source.getUrl() + " does not provide " + ServiceIndex.TYPE_PACKAGE_BASE_ADDRESS);
+		}
+
+		getLogger().debug("using package base address " + serviceIndex.getPackageBaseAddress() + " of " + source.getUrl());
+
+		source.setUrl(serviceIndex.getPackageBaseAddress());
 	}
 
 	@Override
 	public void connect(Repository source, ProxyInfo proxyInfo) throws ConnectionException, AuthenticationException {
 
-		adaptRepository(source);
+		adaptRepository(source, new ConnectionArguments(null, proxyInfo, null));
 
 		getDelegate().connect(source, proxyInfo);
 	}
@@ -567,7 +804,7 @@ public abstract class AbstractNugetWagon implements Wagon {
 	public void connect(Repository source, ProxyInfoProvider proxyInfoProvider) throws
 			ConnectionException, AuthenticationException {
 
-		adaptRepository(source);
+		adaptRepository(source, new ConnectionArguments(null, null, proxyInfoProvider));
 
 		getDelegate().connect(source, proxyInfoProvider);
 	}
@@ -576,7 +813,7 @@ public abstract class AbstractNugetWagon implements Wagon {
 	public void connect(Repository source, AuthenticationInfo authenticationInfo) throws
 			ConnectionException, AuthenticationException {
 
-		adaptRepository(source);
+		adaptRepository(source, new ConnectionArguments(authenticationInfo, null, null));
 
 		getDelegate().connect(source, authenticationInfo);
 	}
@@ -585,16 +822,16 @@ public abstract class AbstractNugetWagon implements Wagon {
 	public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfo proxyInfo) throws
 			ConnectionException, AuthenticationException {
 
-		adaptRepository(source);
+		adaptRepository(source, new ConnectionArguments(authenticationInfo, proxyInfo, null));
 
-		getDelegate().connect(source, authenticationInfo);
+		getDelegate().connect(source, authenticationInfo, proxyInfo);
 	}
 
 	@Override
 	public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfoProvider
 			proxyInfoProvider) throws ConnectionException, AuthenticationException {
 
-		adaptRepository(source);
+		adaptRepository(source, new ConnectionArguments(authenticationInfo, null, proxyInfoProvider));
 
 		getDelegate().connect(source, authenticationInfo, proxyInfoProvider);
 	}
@@ -0,0 +1,162 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import io.github.miracelwhipp.net.common.Streams;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This component keeps the checksums of the files the wagon provided. Nuget repositories know nothing about the poms,
+ * dlls and metadata files the wagon creates, so their checksums are computed locally when the file is provided and
+ * handed out when maven asks for the corresponding .sha1, .md5 or .sha512 resource - without asking the repository.
+ * <p>
+ * Checksums are kept per repository, since the same resource name may denote different files in different
+ * repositories.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = ChecksumCache.class, instantiationStrategy = "singleton")
+public class ChecksumCache {
+
+	public static final String SUFFIX_SHA1 = ".sha1";
+	public static final String SUFFIX_MD5 = ".md5";
+	public static final String SUFFIX_SHA512 = ".sha512";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	@Requirement
+	private Logger logger;
+
+	private final ConcurrentMap<String, Checksums> checksums = new ConcurrentHashMap<>();
+
+	/**
+	 * This method determines whether the given resource is a checksum of another resource.
+	 *
+	 * @param resourceName the name of the resource
+	 * @return true if the resource is a .sha1, .md5 or .sha512 file
+	 */
+	public static boolean isChecksum(String resourceName) {
+
+		return resourceName.endsWith(SUFFIX_SHA1) || resourceName.endsWith(SUFFIX_MD5) || resourceName.endsWith(SUFFIX_SHA512);
+	}
+
+	/**
+	 * This method computes the checksums of a file provided for the given resource.
+	 *
+	 * @param repositoryUrl the url of the repository the resource was requested from
+	 * @param resourceName  the name of the resource maven requested
+	 * @param file          the file provided for the resource
+	 * @throws IOException if the file cannot be read
+	 */
+	public void store(String repositoryUrl, String resourceName, File file) throws IOException {
+
+		MessageDigest sha1 = newDigest("SHA-1");
+		MessageDigest md5 = newDigest("MD5");
+		MessageDigest sha512 = newDigest("SHA-512");
+
+		Streams.digest(file, sha1, md5, sha512);
+
+		Checksums result = new Checksums(hex(sha1.digest()), hex(md5.digest()), hex(sha512.digest()));
+
+		logger.debug("checksums of " + resourceName + " : sha1 = " + result.sha1 + " md5 = " + result.md5);
+
+		checksums.put(key(repositoryUrl, resourceName), result);
+	}
+
+	/**
+	 * This method writes a checksum recorded before.
+	 *
+	 * @param repositoryUrl        the url of the repository the checksum is requested from
+	 * @param checksumResourceName the name of the .sha1, .md5 or .sha512 resource
+	 * @param destination          the file to write the checksum to
+	 * @return false if no checksum of the resource was recorded
+	 * @throws IOException if the destination cannot be written
+	 */
+	public boolean provide(String repositoryUrl, String checksumResourceName, File destination) throws IOException {
+
+		String suffix = checksumResourceName.endsWith(SUFFIX_SHA1) ? SUFFIX_SHA1
+				: checksumResourceName.endsWith(SUFFIX_MD5) ? SUFFIX_MD5 : SUFFIX_SHA512;
+
+		String resourceName = checksumResourceName.substring(0, checksumResourceName.length() - suffix.length());
+
+		Checksums recorded = checksums.get(key(repositoryUrl, resourceName));
+
+		if (recorded == null) {
+
+			logger.debug("no checksums recorded for " + resourceName + " in " + repositoryUrl);
+			return false;
+		}
+
+		FileUtils.write(destination, recorded.get(suffix), StandardCharsets.US_ASCII);
+
+		return true;
+	}
+
+	private static String key(String repositoryUrl, String resourceName) {
+
+		return repositoryUrl + " " + resourceName;
+	}
+
+	private static MessageDigest newDigest(String algorithm) {
+
+		try {
+
+			return MessageDigest.getInstance(algorithm);
+
+		} catch (NoSuchAlgorithmException e) {
+
+			// every java platform is required to support md5 and sha-1, all known ones support sha-512.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String hex(byte[] bytes) {
+
+		char[] result = new char[bytes.length * 2];
+
+		for (int index = 0; index < bytes.length; index++) {
+
+			result[2 * index] = HEX_DIGITS[(bytes[index] >> 4) & 0xf];
+			result[2 * index + 1] = HEX_DIGITS[bytes[index] & 0xf];
+		}
+
+		return new String(result);
+	}
+
+	private static final class Checksums {
+
+		private final String sha1;
+		private final String md5;
+		private final String sha512;
+
+		private Checksums(String sha1, String md5, String sha512) {
+			this.sha1 = sha1;
+			this.md5 = md5;
+			this.sha512 = sha512;
+		}
+
+		private String get(String suffix) {
+
+			switch (suffix) {
+
+				case SUFFIX_SHA1:
+					return sha1;
+
+				case SUFFIX_MD5:
+					return md5;
+
+				default:
+					return sha512;
+			}
+		}
+	}
+}
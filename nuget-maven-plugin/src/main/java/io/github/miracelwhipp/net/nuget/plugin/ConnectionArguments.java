@@ -0,0 +1,78 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.authentication.AuthenticationException;
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+import org.apache.maven.wagon.proxy.ProxyUtils;
+import org.apache.maven.wagon.repository.Repository;
+
+/**
+ * This class holds the arguments a wagon is connected with, to connect other wagons or send requests the same way.
+ *
+ * @author miracelwhipp
+ */
+public class ConnectionArguments implements WagonConnection {
+
+	private final AuthenticationInfo authenticationInfo;
+	private final ProxyInfo proxyInfo;
+	private final ProxyInfoProvider proxyInfoProvider;
+
+	/**
+	 * @param authenticationInfo the credentials or null
+	 * @param proxyInfo          the proxy or null
+	 * @param proxyInfoProvider  the provider of the proxy per protocol or null
+	 */
+	public ConnectionArguments(AuthenticationInfo authenticationInfo, ProxyInfo proxyInfo, ProxyInfoProvider proxyInfoProvider) {
+		this.authenticationInfo = authenticationInfo;
+		this.proxyInfo = proxyInfo;
+		this.proxyInfoProvider = proxyInfoProvider;
+	}
+
+	@Override
+	public AuthenticationInfo getAuthenticationInfo() {
+		return authenticationInfo;
+	}
+
+	/**
+	 * This method resolves the proxy for the given host like the wagons do.
+	 */
+	@Override
+	public ProxyInfo getProxyInfo(String protocol, String host) {
+
+		ProxyInfo result = proxyInfoProvider != null ? proxyInfoProvider.getProxyInfo(protocol) : proxyInfo;
+
+		if (result == null || (proxyInfoProvider == null && !protocol.equalsIgnoreCase(result.getType()))) {
+
+			return null;
+		}
+
+		return ProxyUtils.validateNonProxyHosts(result, host) ? null : result;
+	}
+
+	/**
+	 * This method connects the given wagon to the given repository with these arguments.
+	 *
+	 * @param wagon      the wagon to connect
+	 * @param repository the repository to connect to
+	 * @throws ConnectionException     if the wagon cannot connect
+	 * @throws AuthenticationException if the repository rejects the credentials
+	 */
+	public void connect(Wagon wagon, Repository repository) throws ConnectionException, AuthenticationException {
+
+		if (proxyInfoProvider != null) {
+
+			wagon.connect(repository, authenticationInfo, proxyInfoProvider);
+
+		} else if (proxyInfo != null) {
+
+			wagon.connect(repository, authenticationInfo, proxyInfo);
+
+		} else {
+
+			wagon.connect(repository, authenticationInfo);
+		}
+	}
+}
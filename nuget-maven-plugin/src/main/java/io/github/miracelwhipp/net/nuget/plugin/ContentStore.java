@@ -0,0 +1,204 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import io.github.miracelwhipp.net.common.Streams;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This component keeps the files extracted from nuget packages in a content addressed store in the local repository.
+ * Packages often ship byte identical dlls in several versions and framework folders. Every extracted file is replaced
+ * by a hard link to the file in the store with the same sha256 hash, so each content is stored only once.
+ * <p>
+ * If hard links cannot be created, extracted files are kept as they are. If the store lies on a different device than
+ * the extracted files or the file system does not support hard links, the store is not used for the rest of the
+ * session - copying files into it would double the disk usage instead of saving it.
+ * <p>
+ * The stored files are never touched, since every artifact linked to them would change as well. Linked files record
+ * their extraction with {@link Streams#recordExtraction(File)} instead.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = ContentStore.class, instantiationStrategy = "singleton")
+public class ContentStore {
+
+	public static final String STORE_DIRECTORY = "cas";
+	public static final String SUFFIX_SHA256 = ".sha256";
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	private final AtomicBoolean disabled = new AtomicBoolean();
+
+	/**
+	 * This method replaces an extracted file by a link to the file with the same content in the store. The file is
+	 * added to the store if the store does not contain its content yet.
+	 *
+	 * @param file the extracted file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void deduplicate(File file) throws IOException {
+
+		if (disabled.get()) {
+
+			return;
+		}
+
+		File hashFile = new File(file.getAbsolutePath() + SUFFIX_SHA256);
+
+		if (hashFile.exists()) {
+
+			String storedHash = FileUtils.readFileToString(hashFile, StandardCharsets.US_ASCII).trim();
+			File storedFile = storedHash.length() == 64 ? storedFile(storedHash) : null;
+
+			if (storedFile != null && storedFile.exists() && Files.isSameFile(storedFile.toPath(), file.toPath())) {
+
+				return;
+			}
+		}
+
+		String hash = hash(file);
+		File storedFile = storedFile(hash);
+
+		if (storedFile.exists() || !store(file, storedFile)) {
+
+			if (!storedFile.exists() || !link(file, storedFile)) {
+
+				return;
+			}
+
+			// the link has the modification time of the stored file, which may be older than the package.
+			Streams.recordExtraction(file);
+		}
+
+		FileUtils.write(hashFile, hash, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * This method adds the file to the store.
+	 *
+	 * @return false if the store already contained the content or the file cannot be linked to the store
+	 */
+	private boolean store(File file, File storedFile) throws IOException {
+
+		FileUtils.forceMkdir(storedFile.getParentFile());
+
+		try {
+
+			Files.createLink(storedFile.toPath(), file.toPath());
+
+			logger.debug("stored " + file.getAbsolutePath() + " as " + storedFile.getAbsolutePath());
+			return true;
+
+		} catch (FileAlreadyExistsException e) {
+
+			// another thread or process stored the same content.
+			return false;
+
+		} catch (IOException | UnsupportedOperationException e) {
+
+			linkFailed(file, e);
+			return false;
+		}
+	}
+
+	/**
+	 * This method replaces the file by a link to the stored file.
+	 *
+	 * @return false if the file is kept as it is
+	 */
+	private boolean link(File file, File storedFile) {
+
+		File tempFile = new File(file.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+		try {
+
+			Files.createLink(tempFile.toPath(), storedFile.toPath());
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			logger.debug("replaced " + file.getAbsolutePath() + " by a link to " + storedFile.getAbsolutePath());
+
+			return true;
+
+		} catch (IOException | UnsupportedOperationException e) {
+
+			linkFailed(file, e);
+			return false;
+
+		} finally {
+
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	/**
+	 * This method disables the store if its files cannot be linked to the given file at all.
+	 */
+	private void linkFailed(File file, Exception failure) {
+
+		if ((failure instanceof UnsupportedOperationException || isOnOtherDevice(file)) && disabled.compareAndSet(false, true)) {
+
+			logger.warn("unable to link " + file.getAbsolutePath() + " to the content store " + storeDirectory().getAbsolutePath()
+					+ ". the content store is not used for the rest of the session.");
+		}
+
+		logger.debug("unable to link " + file.getAbsolutePath() + " to the content store. keeping it.", failure);
+	}
+
+	private boolean isOnOtherDevice(File file) {
+
+		try {
+
+			return !Files.getFileStore(storeDirectory().toPath()).equals(Files.getFileStore(file.toPath()));
+
+		} catch (IOException e) {
+
+			logger.debug("unable to determine the file store of " + file.getAbsolutePath(), e);
+			return false;
+		}
+	}
+
+	private File storeDirectory() {
+
+		return new File(configuration.getCacheDirectory(), STORE_DIRECTORY);
+	}
+
+	private File storedFile(String hash) {
+
+		return new File(new File(storeDirectory(), hash.substring(0, 2)), hash);
+	}
+
+	private static String hash(File file) throws IOException {
+
+		MessageDigest digest;
+
+		try {
+
+			digest = MessageDigest.getInstance("SHA-256");
+
+		} catch (NoSuchAlgorithmException e) {
+
+			// every java platform is required to support sha-256.
+			throw new IllegalStateException(e);
+		}
+
+		Streams.digest(file, digest);
+
+		return ChecksumCache.hex(digest.digest());
+	}
+}
@@ -0,0 +1,175 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.maven.wagon.Wagon;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This component downloads the nuget packages a pom depends on in the background, before maven asks for them. The
+ * downloads go through the {@link NugetPackageDownloadManager}, so a later request either finds the file in the
+ * local repository or joins the running download.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = DependencyPrefetcher.class, instantiationStrategy = "singleton")
+public class DependencyPrefetcher implements Disposable {
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetPackageDownloadManager downloadManager;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	private final Set<String> scheduled = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * This method schedules the download of the nuspec and nupkg files of the given dependencies. Dependencies with
+	 * version ranges are skipped, since the version maven will choose is not known yet.
+	 * <p>
+	 * The downloads run after the request that scheduled them has ended, so the given wagon must not be shared with
+	 * other requests - e.g. a wagon {@link PooledDelegateWagon#pin() pinned} to the current connection.
+	 *
+	 * @param delegate            the wagon to download with
+	 * @param dependencies        the dependencies of a nuspec file
+	 * @param repositoryDirectory the local repository the pom of the nuspec file lies in
+	 */
+	public void prefetchDependencies(Wagon delegate, List<NuspecToPomConverter.Dependency> dependencies, File repositoryDirectory) {
+
+		if (!configuration.isPrefetch()) {
+
+			return;
+		}
+
+		for (NuspecToPomConverter.Dependency dependency : dependencies) {
+
+			String id = dependency.getId().trim();
+			String version = exactVersion(dependency.getVersion().trim());
+
+			if (id.isEmpty() || version == null) {
+
+				continue;
+			}
+
+			if (configuration.getDependencyMetadata() == NugetWagonConfiguration.DependencyMetadata.NUSPEC) {
+
+				prefetch(delegate, NugetArtifact.newInstance(id, id, version, "", NugetArtifact.TYPE_SPECIFICATION), repositoryDirectory);
+			}
+
+			prefetch(delegate, NugetArtifact.newInstance(id, id, version, "", NugetArtifact.TYPE_PACKAGE), repositoryDirectory);
+		}
+	}
+
+	private void prefetch(final Wagon delegate, final NugetArtifact artifact, File repositoryDirectory) {
+
+		final File destination = new File(repositoryDirectory, artifact.getWagonArtifact().getArtifactFilename().getPath());
+
+		if (destination.exists() || !scheduled.add(artifact.resourceString())) {
+
+			return;
+		}
+
+		logger.debug("prefetching " + artifact.resourceString() + " to " + destination.getAbsolutePath());
+
+		try {
+
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+
+					try {
+
+						downloadManager.get(delegate, artifact, destination);
+
+					} catch (Exception e) {
+
+						logger.debug("prefetching " + artifact.resourceString() + " failed: " + e.getMessage());
+						scheduled.remove(artifact.resourceString());
+					}
+				}
+			});
+
+		} catch (RejectedExecutionException e) {
+
+			logger.debug("prefetch queue is full. skipping " + artifact.resourceString());
+			scheduled.remove(artifact.resourceString());
+		}
+	}
+
+	private synchronized ThreadPoolExecutor getExecutor() {
+
+		if (executor != null) {
+
+			return executor;
+		}
+
+		int threads = configuration.getPrefetchThreads();
+
+		executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(configuration.getPrefetchQueueSize()), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread result = new Thread(runnable, "nuget-prefetch-" + count.incrementAndGet());
+				result.setDaemon(true);
+
+				return result;
+			}
+		});
+
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	@Override
+	public synchronized void dispose() {
+
+		if (executor != null) {
+
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private static String exactVersion(String version) {
+
+		if (version.isEmpty()) {
+
+			return null;
+		}
+
+		if (version.startsWith("[") && version.endsWith("]") && version.indexOf(',') < 0) {
+
+			return version.substring(1, version.length() - 1).trim();
+		}
+
+		if (version.startsWith("[") || version.startsWith("(") || version.indexOf(',') >= 0) {
+
+			return null;
+		}
+
+		return version;
+	}
+}
@@ -0,0 +1,224 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class converts the index.json of a nuget package - the list of its versions - to a maven-metadata.xml. The
+ * versions are read token by token and the xml is written directly to its destination.
+ *
+ * @author miracelwhipp
+ */
+public final class MetadataXmlWriter {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+	private static final Pattern RELEASE_VERSION = Pattern.compile("[0-9]+(\\.[0-9]+)*");
+
+	private MetadataXmlWriter() {
+	}
+
+	/**
+	 * This method writes the maven-metadata.xml for the given index.json.
+	 *
+	 * @param indexFile   the index.json of the package
+	 * @param destination the file to write the maven metadata to
+	 * @param groupId     the group id of the artifact
+	 * @param artifactId  the artifact id of the artifact
+	 * @throws IOException if the index cannot be read or the metadata cannot be written
+	 */
+	public static void write(File indexFile, File destination, String groupId, String artifactId) throws IOException {
+
+		List<String> versions = readVersions(indexFile);
+
+		FileUtils.forceMkdir(destination.getParentFile());
+
+		try (OutputStream target = new FileOutputStream(destination)) {
+
+			write(versions, target, groupId, artifactId);
+		}
+	}
+
+	/**
+	 * This method reads the versions listed in the given index.json.
+	 *
+	 * @param indexFile the index.json of the package
+	 * @return the versions in the order of the index
+	 * @throws IOException if the index cannot be read or is malformed
+	 */
+	public static List<String> readVersions(File indexFile) throws IOException {
+
+		try (JsonParser parser = JSON_FACTORY.createParser(indexFile)) {
+
+			return readVersions(parser);
+		}
+	}
+
+	/**
+	 * This method reads the versions listed in the given index.json.
+	 *
+	 * @param index the content of the index.json. It is not closed.
+	 * @return the versions in the order of the index
+	 * @throws IOException if the index cannot be read or is malformed
+	 */
+	public static List<String> readVersions(InputStream index) throws IOException {
+
+		try (JsonParser parser = JSON_FACTORY.createParser(index)) {
+
+			return readVersions(parser);
+		}
+	}
+
+	private static List<String> readVersions(JsonParser parser) throws IOException {
+
+		List<String> result = new ArrayList<>();
+
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+
+			throw new JsonParseException(parser, "index.json does not contain an object");
+		}
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if (!"versions".equals(name) || value == JsonToken.VALUE_NULL) {
+
+				parser.skipChildren();
+				continue;
+			}
+
+			if (value != JsonToken.START_ARRAY) {
+
+				throw new JsonParseException(parser, "versions of index.json are not an array");
+			}
+
+			for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+
+				if (token == JsonToken.VALUE_STRING) {
+
+					result.add(parser.getText());
+
+				} else {
+
+					parser.skipChildren();
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method writes the maven-metadata.xml for the given versions.
+	 *
+	 * @param versions   the versions of the artifact in ascending order
+	 * @param target     the stream to write to. It is not closed.
+	 * @param groupId    the group id of the artifact
+	 * @param artifactId the artifact id of the artifact
+	 * @throws IOException if the metadata cannot be written
+	 */
+	public static void write(List<String> versions, OutputStream target, String groupId, String artifactId) throws IOException {
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8));
+
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+				"<metadata modelVersion=\"1.1.0\">\n" +
+				"  <groupId>");
+		writeText(writer, groupId);
+		writer.write("</groupId>\n" +
+				"  <artifactId>");
+		writeText(writer, artifactId);
+		writer.write("</artifactId>\n" +
+				"  <versioning>\n");
+
+		if (!versions.isEmpty()) {
+
+			writer.write("    <latest>");
+			writeText(writer, versions.get(versions.size() - 1));
+			writer.write("</latest>\n");
+		}
+
+		String releaseVersion = findReleaseVersion(versions);
+
+		if (releaseVersion != null) {
+
+			writer.write("    <release>");
+			writeText(writer, releaseVersion);
+			writer.write("</release>\n");
+		}
+
+		writer.write("    <versions>\n");
+
+		for (String version : versions) {
+
+			writer.write("      <version>");
+			writeText(writer, version);
+			writer.write("</version>\n");
+		}
+
+		writer.write("    </versions>\n" +
+				"  </versioning>\n" +
+				"</metadata>\n");
+
+		writer.flush();
+	}
+
+	private static String findReleaseVersion(List<String> versions) {
+
+		for (int index = versions.size() - 1; index >= 0; index--) {
+
+			String version = versions.get(index);
+
+			if (RELEASE_VERSION.matcher(version).matches()) {
+
+				return version;
+			}
+		}
+
+		return null;
+	}
+
+	private static void writeText(Writer writer, String text) throws IOException {
+
+		for (int index = 0; index < text.length(); index++) {
+
+			char character = text.charAt(index);
+
+			switch (character) {
+
+				case '&':
+					writer.write("&amp;");
+					break;
+
+				case '<':
+					writer.write("&lt;");
+					break;
+
+				case '>':
+					writer.write("&gt;");
+					break;
+
+				default:
+					writer.write(character);
+			}
+		}
+	}
+}
@@ -3,25 +3,36 @@ package io.github.miracelwhipp.net.nuget.plugin;
 import io.github.miracelwhipp.net.provider.FrameworkVersion;
 import io.github.miracelwhipp.net.provider.NetFrameworkProvider;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.wagon.TransferFailedException;
 import org.apache.maven.wagon.Wagon;
 import org.apache.maven.wagon.providers.http.HttpWagon;
+import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
 
 /**
  * This wagon allows downloading dlls deployed in nuget as maven artifacts. It is implemented by simply
- * parsing and adapting the resource to load and delegating to {@link HttpWagon}. It can be used by specifying
- * nuget as protocol in the url. e.g. nuget://api.nuget.org/v3-flatcontainer/
+ * parsing and adapting the resource to load and delegating to {@link HttpWagon}. Concurrent transfers are
+ * spread over several http wagons by {@link PooledDelegateWagon}. It can be used by specifying
+ * nuget as protocol in the url. e.g. nuget://api.nuget.org/v3-flatcontainer/ or - pointing to the service index of
+ * the feed - nuget://api.nuget.org/v3/index.json
  *
  * @author miracelwhipp
  */
 @Component(role = Wagon.class, hint = "nuget", instantiationStrategy = "singleton")
 public class NuGetWagon extends AbstractNugetWagon {
 
-	@Requirement(hint = "https")
+	private static final String DELEGATE_HINT = "https";
+
+	@Requirement(hint = DELEGATE_HINT)
 	private Wagon delegate;
 
+	@Requirement
+	private PlexusContainer container;
+
+	private volatile PooledDelegateWagon pooledDelegate;
+
 	@Requirement
 	private NugetPackageDownloadManager downloadManager;
 
@@ -31,9 +42,54 @@ public class NuGetWagon extends AbstractNugetWagon {
 	@Requirement
 	private MavenSession session;
 
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	@Requirement
+	private DependencyPrefetcher prefetcher;
+
+	@Requirement
+	private PackageIndexCache indexCache;
+
+	@Requirement
+	private ServiceIndexResolver serviceIndexResolver;
+
+	@Requirement
+	private RegistrationCache registrationCache;
+
+	@Requirement
+	private ChecksumCache checksumCache;
+
+	@Requirement
+	private ContentStore contentStore;
+
+	@Requirement
+	private WagonStatistics statistics;
+
+	@Override
+	protected PooledDelegateWagon getDelegate() {
+
+		PooledDelegateWagon result = pooledDelegate;
+
+		if (result != null) {
+
+			return result;
+		}
+
+		synchronized (this) {
+
+			if (pooledDelegate == null) {
+
+				pooledDelegate = new PooledDelegateWagon(container, DELEGATE_HINT, delegate, logger);
+			}
+
+			return pooledDelegate;
+		}
+	}
+
 	@Override
-	protected Wagon getDelegate() {
-		return delegate;
+	protected Wagon pinDelegate() throws TransferFailedException {
+		return getDelegate().pin();
 	}
 
 	@Override
@@ -46,6 +102,46 @@ public class NuGetWagon extends AbstractNugetWagon {
 		return logger;
 	}
 
+	@Override
+	protected NugetWagonConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	protected DependencyPrefetcher getPrefetcher() {
+		return prefetcher;
+	}
+
+	@Override
+	protected PackageIndexCache getIndexCache() {
+		return indexCache;
+	}
+
+	@Override
+	protected ServiceIndexResolver getServiceIndexResolver() {
+		return serviceIndexResolver;
+	}
+
+	@Override
+	protected RegistrationCache getRegistrationCache() {
+		return registrationCache;
+	}
+
+	@Override
+	protected ChecksumCache getChecksumCache() {
+		return checksumCache;
+	}
+
+	@Override
+	protected ContentStore getContentStore() {
+		return contentStore;
+	}
+
+	@Override
+	protected WagonStatistics getStatistics() {
+		return statistics;
+	}
+
 	@Override
 	protected FrameworkVersion getDefaultFrameworkVersion() {
 
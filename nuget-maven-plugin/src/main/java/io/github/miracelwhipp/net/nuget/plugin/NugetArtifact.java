@@ -4,9 +4,13 @@ import io.github.miracelwhipp.net.common.WagonArtifact;
 
 import java.io.File;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * This bean holds the information needed to download a package from nuget.
+ * This bean holds the information needed to download a package from nuget. Instances are kept per
+ * {@link WagonArtifact} until there are too many of them, so the resource string is usually computed once per
+ * artifact.
  *
  * @author miracelwhipp
  */
@@ -16,10 +20,17 @@ public class NugetArtifact {
 	public static final String EXTENSION_PACKAGE = ".nupkg";
 	public static final String TYPE_SPECIFICATION = "nuspec";
 	public static final String TYPE_PACKAGE = "nupkg";
+	public static final String TYPE_DLL = "dll";
 
+	private static final int CACHE_SIZE = 4096;
+
+	private static final ConcurrentMap<WagonArtifact, NugetArtifact> INSTANCES = new ConcurrentHashMap<>();
 
 	private final WagonArtifact wagonArtifact;
 
+	// computed when it is first used. races only compute it twice.
+	private String resourceString;
+
 	private NugetArtifact(WagonArtifact wagonArtifact) {
 		this.wagonArtifact = wagonArtifact;
 	}
@@ -79,16 +90,33 @@ public class NugetArtifact {
 
 	public String resourceString() {
 
+		String result = resourceString;
+
+		if (result == null) {
+
+			result = computeResourceString();
+			resourceString = result;
+		}
+
+		return result;
+	}
+
+	private String computeResourceString() {
+
+		String groupId = getGroupId().toLowerCase(Locale.ENGLISH);
+
 		if (isMetadata()) {
 
-			return getGroupId().toLowerCase(Locale.ENGLISH) + "/index.json";
+			return groupId + "/index.json";
 		}
 
+		String version = getVersion().toLowerCase(Locale.ENGLISH);
+
 		if (isSpec()) {
-			return getGroupId().toLowerCase(Locale.ENGLISH) + "/" + getVersion().toLowerCase(Locale.ENGLISH) + "/" + getGroupId().toLowerCase(Locale.ENGLISH) + EXTENSION_SPECIFICATION;
+			return groupId + "/" + version + "/" + groupId + EXTENSION_SPECIFICATION;
 		}
 
-		return getGroupId().toLowerCase(Locale.ENGLISH) + "/" + getVersion().toLowerCase(Locale.ENGLISH) + "/" + getGroupId().toLowerCase(Locale.ENGLISH) + "." + getVersion().toLowerCase(Locale.ENGLISH) + EXTENSION_PACKAGE;
+		return groupId + "/" + version + "/" + groupId + "." + version + EXTENSION_PACKAGE;
 	}
 
 	public String artifactName() {
@@ -105,11 +133,11 @@ public class NugetArtifact {
 
 		if (isSpec()) {
 
-			return new NugetArtifact(WagonArtifact.newInstance(
+			return forWagonArtifact(WagonArtifact.newInstance(
 					getGroupId(), getGroupId(), getVersion(), getClassifier(), TYPE_SPECIFICATION));
 		}
 
-		return new NugetArtifact(WagonArtifact.newInstance(
+		return forWagonArtifact(WagonArtifact.newInstance(
 				getGroupId(), getGroupId(), getVersion(), getClassifier(), TYPE_PACKAGE));
 
 	}
@@ -117,11 +145,32 @@ public class NugetArtifact {
 	public static NugetArtifact newInstance(
 			String groupId, String artifactId, String version, String classifier, String type) {
 
-		return new NugetArtifact(WagonArtifact.newInstance(groupId, artifactId, version, classifier, type));
+		return forWagonArtifact(WagonArtifact.newInstance(groupId, artifactId, version, classifier, type));
 	}
 
 	public static NugetArtifact fromMavenResourceString(String resourceName) {
 
-		return new NugetArtifact(WagonArtifact.fromWagonResourceString(resourceName));
+		return forWagonArtifact(WagonArtifact.fromWagonResourceString(resourceName));
+	}
+
+	private static NugetArtifact forWagonArtifact(WagonArtifact wagonArtifact) {
+
+		NugetArtifact result = INSTANCES.get(wagonArtifact);
+
+		if (result != null) {
+
+			return result;
+		}
+
+		if (INSTANCES.size() >= CACHE_SIZE) {
+
+			INSTANCES.clear();
+		}
+
+		result = new NugetArtifact(wagonArtifact);
+
+		NugetArtifact existing = INSTANCES.putIfAbsent(wagonArtifact, result);
+
+		return existing == null ? result : existing;
 	}
 }
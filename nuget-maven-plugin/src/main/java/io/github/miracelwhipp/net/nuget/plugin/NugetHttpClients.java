@@ -0,0 +1,243 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.maven.wagon.AbstractWagon;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+import org.apache.maven.wagon.proxy.ProxyUtils;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This component provides the http clients for the requests the wagon sends directly instead of through the delegate
+ * wagon. There is one client per repository, keeping its connections alive in a pool, so consecutive requests skip
+ * the tcp and tls handshakes. The clients are closed when the session ends - callers must only close the responses.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = NugetHttpClients.class, instantiationStrategy = "singleton")
+public class NugetHttpClients implements Disposable {
+
+	private static final String DEFAULT_REPOSITORY = "";
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	private final ConcurrentMap<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+	private boolean disposed;
+
+	/**
+	 * This method returns the client for the given repository. Pool size and timeouts may be configured for each
+	 * repository.
+	 *
+	 * @param repositoryId the id of the repository or null if the request does not belong to a repository
+	 * @return the client
+	 */
+	public CloseableHttpClient getClient(String repositoryId) {
+
+		String key = repositoryId == null ? DEFAULT_REPOSITORY : repositoryId;
+
+		CloseableHttpClient result = clients.get(key);
+
+		if (result != null) {
+
+			return result;
+		}
+
+		synchronized (this) {
+
+			if (disposed) {
+
+				throw new IllegalStateException("http clients are already closed");
+			}
+
+			result = clients.get(key);
+
+			if (result == null) {
+
+				result = createClient(repositoryId);
+				clients.put(key, result);
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * This method sends the given request to the repository the given wagon is connected to. The request carries the
+	 * credentials and uses the proxy the wagon was connected with. Like the wagon, it offers the credentials to the host
+	 * of the repository only, not to the hosts it redirects to.
+	 *
+	 * @param delegate the wagon connected to the repository
+	 * @param request  the request to send
+	 * @return the response. It has to be closed by the caller.
+	 * @throws IOException if the request fails
+	 */
+	public CloseableHttpResponse execute(Wagon delegate, HttpRequestBase request) throws IOException {
+
+		return execute(delegate.getRepository(), getAuthenticationInfo(delegate),
+				getProxyInfo(delegate, request.getURI().getScheme(), request.getURI().getHost()), request);
+	}
+
+	/**
+	 * This method sends the given request to the given repository before a wagon is connected to it. The request
+	 * carries the credentials and uses the proxy of the given connection arguments, the credentials are offered to the
+	 * host of the repository only.
+	 *
+	 * @param repository the repository the request belongs to
+	 * @param connection the arguments the wagon is connected with
+	 * @param request    the request to send
+	 * @return the response. It has to be closed by the caller.
+	 * @throws IOException if the request fails
+	 */
+	public CloseableHttpResponse execute(Repository repository, WagonConnection connection, HttpRequestBase request) throws IOException {
+
+		return execute(repository, connection.getAuthenticationInfo(),
+				connection.getProxyInfo(request.getURI().getScheme(), request.getURI().getHost()), request);
+	}
+
+	private CloseableHttpResponse execute(Repository repository, AuthenticationInfo authenticationInfo, ProxyInfo proxyInfo, HttpRequestBase request) throws IOException {
+
+		String repositoryId = repository.getId();
+
+		HttpClientContext context = HttpClientContext.create();
+		CredentialsProvider credentials = new BasicCredentialsProvider();
+
+		if (authenticationInfo != null && authenticationInfo.getUserName() != null) {
+
+			credentials.setCredentials(new AuthScope(repository.getHost(), repository.getPort()),
+					new UsernamePasswordCredentials(authenticationInfo.getUserName(), authenticationInfo.getPassword()));
+		}
+
+		if (proxyInfo != null) {
+
+			HttpHost proxy = new HttpHost(proxyInfo.getHost(), proxyInfo.getPort());
+
+			request.setConfig(RequestConfig.copy(createRequestConfig(repositoryId)).setProxy(proxy).build());
+
+			if (proxyInfo.getUserName() != null) {
+
+				credentials.setCredentials(new AuthScope(proxy),
+						new UsernamePasswordCredentials(proxyInfo.getUserName(), proxyInfo.getPassword()));
+			}
+		}
+
+		context.setCredentialsProvider(credentials);
+
+		return getClient(repositoryId).execute(request, context);
+	}
+
+	/**
+	 * This method returns the credentials the given wagon was connected with.
+	 *
+	 * @param delegate the wagon
+	 * @return the credentials or null if there are none or they are not known
+	 */
+	public static AuthenticationInfo getAuthenticationInfo(Wagon delegate) {
+
+		if (delegate instanceof WagonConnection) {
+
+			return ((WagonConnection) delegate).getAuthenticationInfo();
+		}
+
+		if (delegate instanceof AbstractWagon) {
+
+			return ((AbstractWagon) delegate).getAuthenticationInfo();
+		}
+
+		return null;
+	}
+
+	private static ProxyInfo getProxyInfo(Wagon delegate, String protocol, String host) {
+
+		if (delegate instanceof WagonConnection) {
+
+			return ((WagonConnection) delegate).getProxyInfo(protocol, host);
+		}
+
+		if (delegate instanceof AbstractWagon) {
+
+			ProxyInfo result = ((AbstractWagon) delegate).getProxyInfo();
+
+			return result == null || ProxyUtils.validateNonProxyHosts(result, host) ? null : result;
+		}
+
+		return null;
+	}
+
+	private CloseableHttpClient createClient(String repositoryId) {
+
+		int maxConnections = configuration.getHttpMaxConnections(repositoryId);
+		int connectTimeout = configuration.getHttpConnectTimeout(repositoryId);
+		int socketTimeout = configuration.getHttpSocketTimeout(repositoryId);
+
+		logger.debug("creating http client for repository " + repositoryId + " with " + maxConnections
+				+ " connections, connect timeout " + connectTimeout + " ms, socket timeout " + socketTimeout + " ms");
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+		return HttpClientBuilder.create()
+				.useSystemProperties()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(createRequestConfig(repositoryId))
+				.evictIdleConnections(30, TimeUnit.SECONDS)
+				.build();
+	}
+
+	private RequestConfig createRequestConfig(String repositoryId) {
+
+		int connectTimeout = configuration.getHttpConnectTimeout(repositoryId);
+
+		return RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setConnectionRequestTimeout(connectTimeout)
+				.setSocketTimeout(configuration.getHttpSocketTimeout(repositoryId))
+				.build();
+	}
+
+	@Override
+	public synchronized void dispose() {
+
+		disposed = true;
+
+		for (CloseableHttpClient client : clients.values()) {
+
+			try {
+
+				client.close();
+
+			} catch (IOException e) {
+
+				logger.debug("unable to close http client", e);
+			}
+		}
+
+		clients.clear();
+	}
+}
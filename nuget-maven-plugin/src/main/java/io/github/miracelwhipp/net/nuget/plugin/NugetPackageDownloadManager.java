@@ -1,11 +1,12 @@
 package io.github.miracelwhipp.net.nuget.plugin;
 
+import io.github.miracelwhipp.net.common.LockTable;
+import io.github.miracelwhipp.net.common.ProcessLock;
+import io.github.miracelwhipp.net.common.Streams;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpHead;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.apache.maven.wagon.TransferFailedException;
 import org.apache.maven.wagon.Wagon;
@@ -18,9 +19,11 @@ import org.codehaus.plexus.logging.Logger;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This component manages downloads of .nupgk files.
@@ -33,113 +36,322 @@ public class NugetPackageDownloadManager {
 	@Requirement
 	private Logger logger;
 
-	private final Map<String, File> localResources = new HashMap<>();
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	@Requirement
+	private NugetHttpClients httpClients;
+
+	@Requirement
+	private PackageVerifier verifier;
 
-	public synchronized void get(Wagon delegate, NugetArtifact artifact, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+	@Requirement
+	private WagonStatistics statistics;
+
+	private final LockTable locks = new LockTable();
+
+	private final ConcurrentMap<String, SharedTransfer> transfers = new ConcurrentHashMap<>();
+
+	public void get(Wagon delegate, NugetArtifact artifact, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
 
 		logger.debug("downloadmanager.get " + artifact.toString() + " to " + destination.getAbsolutePath());
 
 		if (destination.exists()) {
 
 			logger.debug("File already exists. Nothing to be done.");
+			statistics.hit(WagonStatistics.Cache.PACKAGE);
 
 			return;
 		}
 
+		statistics.miss(WagonStatistics.Cache.PACKAGE);
+
+		download(delegate, artifact, destination, true);
+	}
+
+	private void download(Wagon delegate, NugetArtifact artifact, File destination, boolean keepExisting) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
 		String key = artifact.resourceString();
 
-		logger.debug("Acquiring lock for " + key + "...");
-		final File lock = getLock(key, destination);
+		SharedTransfer transfer = new SharedTransfer(
+				new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString()));
 
-		synchronized (lock) {
+		SharedTransfer running = joinTransfer(key, transfer);
 
-			logger.debug("Lock acquired for " + key + "...");
+		long waitStart = 0;
 
-			if (destination.exists()) {
+		if (running == transfer) {
 
-				logger.debug("File was created while waiting for lock. Nothing to be done.");
-				return;
+			logger.debug("Starting download of " + key + "...");
+			statistics.miss(WagonStatistics.Cache.SHARED_TRANSFER);
+			lead(delegate, key, transfer, keepExisting ? destination : null);
+
+		} else {
+
+			logger.debug("Joining running download of " + key + "...");
+			statistics.hit(WagonStatistics.Cache.SHARED_TRANSFER);
+			waitStart = statistics.start();
+		}
+
+		try {
+
+			File result = running.await();
+
+			statistics.stop(WagonStatistics.Phase.TRANSFER_WAIT, waitStart, key);
+
+			provideResult(key, running, result, destination, keepExisting);
+
+		} finally {
+
+			if (running.leave()) {
+
+				FileUtils.deleteQuietly(running.getStagingFile());
 			}
+		}
 
-			File tempFile = new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+		logger.debug("Download done. " + key + " provided as " + destination.getAbsolutePath());
+	}
+
+	private SharedTransfer joinTransfer(String key, SharedTransfer transfer) {
+
+		while (true) {
+
+			SharedTransfer running = transfers.putIfAbsent(key, transfer);
+
+			if (running == null) {
+
+				return transfer;
+			}
+
+			if (running.join()) {
+
+				return running;
+			}
 
-			logger.debug("downloading temp-file " + tempFile.getAbsolutePath());
-			delegate.get(key, tempFile);
+			// the running transfer is about to finish and will be removed by its leader.
+			Thread.yield();
+		}
+	}
+
+	private void lead(Wagon delegate, String key, SharedTransfer transfer, File existingDestination) {
+
+		try {
+
+			File result;
+
+			if (existingDestination != null && configuration.isLockAcrossProcesses()) {
+
+				long lockStart = statistics.start();
+
+				try (ProcessLock ignored = ProcessLock.acquire(existingDestination)) {
+
+					statistics.stop(WagonStatistics.Phase.PROCESS_LOCK_WAIT, lockStart, key);
+
+					result = download(delegate, key, transfer, existingDestination);
+				}
+
+			} else {
+
+				result = download(delegate, key, transfer, existingDestination);
+			}
+
+			finishTransfer(key, transfer);
+			transfer.succeed(result);
+
+		} catch (TransferFailedException | ResourceDoesNotExistException | AuthorizationException | RuntimeException e) {
+
+			finishTransfer(key, transfer);
+			transfer.fail(e);
+
+		} catch (IOException e) {
 
-			moveFile(destination, tempFile);
+			finishTransfer(key, transfer);
+			transfer.fail(new TransferFailedException(e.getMessage(), e));
 
-			logger.debug("Download done. tempfile renamed to " + destination.getAbsolutePath());
+		} catch (Error e) {
+
+			// the threads that joined the transfer must not wait forever.
+			finishTransfer(key, transfer);
+			transfer.fail(new TransferFailedException("transfer of " + key + " failed: " + e, e));
+
+			throw e;
 		}
 	}
 
-	private synchronized File getLock(String key, File destination) {
+	private File download(Wagon delegate, String key, SharedTransfer transfer, File existingDestination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		if (existingDestination != null && existingDestination.exists()) {
+
+			logger.debug("File was created while waiting for the transfer. Nothing to be done.");
+			return existingDestination;
+		}
+
+		logger.debug("downloading temp-file " + transfer.getStagingFile().getAbsolutePath());
+
+		long start = statistics.start();
+
+		verifier.get(delegate, key, transfer.getStagingFile());
 
-		File result = localResources.get(key);
+		statistics.stop(WagonStatistics.Phase.DOWNLOAD, start, key, transfer.getStagingFile());
 
-		if (result != null) {
+		if (existingDestination != null && configuration.isLockAcrossProcesses()) {
 
-			return result;
+			// other processes only look at the destination, so it has to be complete before the file lock is released.
+			moveFile(existingDestination, transfer.getStagingFile());
+
+			return existingDestination;
+		}
+
+		return transfer.getStagingFile();
+	}
+
+	private void finishTransfer(String key, SharedTransfer transfer) {
+
+		transfer.close();
+		transfers.remove(key, transfer);
+	}
+
+	private void provideResult(String key, SharedTransfer transfer, File result, File destination, boolean keepExisting) throws TransferFailedException {
+
+		if (result.equals(destination)) {
+
+			return;
 		}
 
-		localResources.put(key, destination);
+		// the participants of a transfer provide their results concurrently, so checking and replacing the destination
+		// has to happen under the lock of the package.
+		try (LockTable.Lock ignored = locks.lock(key)) {
 
-		return destination;
+			if (keepExisting && destination.exists()) {
+
+				// another participant already provided the file.
+				return;
+			}
+
+			if (result.equals(transfer.getStagingFile()) && transfer.isLastParticipant()) {
+
+				moveFile(destination, result);
+				return;
+			}
+
+			File tempFile = new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+			try {
+
+				Streams.copyFile(result, tempFile);
+
+				moveFile(destination, tempFile);
+
+			} catch (IOException e) {
+
+				throw new TransferFailedException(e.getMessage(), e);
+
+			} finally {
+
+				FileUtils.deleteQuietly(tempFile);
+			}
+		}
 	}
 
-	public synchronized boolean getIfNewer(Wagon delegate, NugetArtifact artifact, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+	public boolean getIfNewer(Wagon delegate, NugetArtifact artifact, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
 
 		logger.debug("downloadmanager.getIfNewer " + artifact.toString() + " to " + destination.getAbsolutePath() + " for timestamp " + timestamp);
 
 		if (destination.exists() && destination.lastModified() > timestamp) {
 
 			logger.debug("File already exists and is last modified " + destination.lastModified() + ". Nothing to be done.");
+			statistics.hit(WagonStatistics.Cache.PACKAGE);
 
 			return true;
 		}
 
+		statistics.miss(WagonStatistics.Cache.PACKAGE);
+
 		String key = artifact.resourceString();
 
 		logger.debug("Acquiring lock for " + key + "...");
-		final File lock = getLock(key, destination);
 
-		synchronized (lock) {
+		long lockStart = statistics.start();
+
+		try (LockTable.Lock ignored = locks.lock(key)) {
+
+			statistics.stop(WagonStatistics.Phase.DOWNLOAD_LOCK_WAIT, lockStart, key);
 
 			logger.debug("Lock acquired for " + key + "...");
-			if (destination.exists() && destination.lastModified() > timestamp) {
 
-				logger.debug("File was modified at " + destination.lastModified() + " while waiting for lock. Nothing to be done.");
-				return true;
+			if (!configuration.isLockAcrossProcesses()) {
+
+				return downloadIfNewer(delegate, key, destination, timestamp);
 			}
 
-			File tempFile = new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+			long fileLockStart = statistics.start();
 
-			logger.debug("downloading temp-file " + tempFile.getAbsolutePath());
-			boolean result = delegate.getIfNewer(key, tempFile, timestamp);
+			try (ProcessLock ignoredFileLock = ProcessLock.acquire(destination)) {
 
-			if (!result) {
+				statistics.stop(WagonStatistics.Phase.PROCESS_LOCK_WAIT, fileLockStart, key);
 
-				logger.debug("Delegate omitted download.");
-				return false;
+				return downloadIfNewer(delegate, key, destination, timestamp);
 			}
 
-			moveFile(destination, tempFile);
+		} catch (IOException e) {
 
-			logger.debug("Download done. tempfile renamed to " + destination.getAbsolutePath());
+			throw new TransferFailedException(e.getMessage(), e);
+		}
+	}
+
+	private boolean downloadIfNewer(Wagon delegate, String key, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
 
+		if (destination.exists() && destination.lastModified() > timestamp) {
+
+			logger.debug("File was modified at " + destination.lastModified() + " while waiting for lock. Nothing to be done.");
 			return true;
 		}
+
+		File tempFile = new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+		logger.debug("downloading temp-file " + tempFile.getAbsolutePath());
+
+		boolean result;
+
+		long start = statistics.start();
+
+		try {
+
+			result = verifier.getIfNewer(delegate, key, tempFile, timestamp);
+
+			statistics.stop(WagonStatistics.Phase.DOWNLOAD, start, key, tempFile);
+
+		} catch (TransferFailedException | ResourceDoesNotExistException | AuthorizationException | RuntimeException e) {
+
+			FileUtils.deleteQuietly(tempFile);
+			throw e;
+		}
+
+		if (!result) {
+
+			logger.debug("Delegate omitted download.");
+			return false;
+		}
+
+		moveFile(destination, tempFile);
+
+		logger.debug("Download done. tempfile renamed to " + destination.getAbsolutePath());
+
+		return true;
 	}
 
+	/**
+	 * This method replaces the destination with the temp file at once, so readers see either the old or the new file.
+	 */
 	private void moveFile(File destination, File tempFile) throws TransferFailedException {
 
-		if (destination.exists()) {
+		try {
 
-			FileUtils.deleteQuietly(destination);
-		}
+			Files.move(tempFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
-		if (!tempFile.renameTo(destination)) {
+		} catch (IOException e) {
 
-			throw new TransferFailedException("cannot rename file. source = " + tempFile.getAbsolutePath() + " target = " + destination.getAbsolutePath());
+			throw new TransferFailedException("cannot rename file. source = " + tempFile.getAbsolutePath() + " target = " + destination.getAbsolutePath(), e);
 		}
 	}
 
@@ -152,42 +364,22 @@ public class NugetPackageDownloadManager {
 		if (wrappedDestination.exists()) {
 
 			logger.debug("File already exists. Nothing to be done.");
+			statistics.hit(WagonStatistics.Cache.NUGET_FILE);
 
 			return;
 		}
 
-		String key = artifact.resourceString();
-
-		logger.debug("Acquiring lock for " + key + "...");
-		final File lock = getLock(key, wrappedDestination);
-
-		synchronized (lock) {
-
-			logger.debug("Lock acquired for " + key + "...");
-
-			if (wrappedDestination.exists()) {
-
-				logger.debug("File was created while waiting for lock. Nothing to be done.");
-				return;
-			}
+		statistics.miss(WagonStatistics.Cache.NUGET_FILE);
 
-			try {
-
-				File parentDirectory = wrappedDestination.getParentFile();
+		download(delegate, artifact, destination, false);
 
-				if (!parentDirectory.exists()) {
+		try {
 
-					parentDirectory.mkdirs();
-				}
+			wrappedDestination.createNewFile();
 
-				wrappedDestination.createNewFile();
-
-			} catch (IOException e) {
-
-				throw new TransferFailedException(e.getMessage(), e);
-			}
+		} catch (IOException e) {
 
-			delegate.get(key, destination);
+			throw new TransferFailedException(e.getMessage(), e);
 		}
 	}
 
@@ -201,26 +393,23 @@ public class NugetPackageDownloadManager {
 			throw new ResourceDoesNotExistException("hash for files extracted from nuget archive not supported.");
 		}
 
-		try (CloseableHttpClient client = HttpClients.createDefault()) {
+		HttpHead headRequest = new HttpHead(repository.getUrl() + "/" + artifact.resourceString());
 
-			HttpHead headRequest = new HttpHead(repository.getUrl() + "/" + artifact.resourceString());
+		logger.debug("invoking HTTP HEAD " + repository.getUrl() + "/" + artifact.resourceString());
 
-			logger.debug("invoking HTTP HEAD " + repository.getUrl() + "/" + artifact.resourceString());
+		try (CloseableHttpResponse response = httpClients.getClient(repository.getId()).execute(headRequest)) {
 
-			try (CloseableHttpResponse response = client.execute(headRequest)) {
+			Header checkSum = response.getFirstHeader("Content-MD5");
 
-				Header checkSum = response.getFirstHeader("Content-MD5");
+			if (checkSum == null) {
 
-				if (checkSum == null) {
-
-					logger.debug("Content-MD5 header not set");
-					throw new ResourceDoesNotExistException("Content-MD5 header not set");
-				}
-
-				logger.debug("wrting md5 hash to " + destination.getAbsolutePath());
-				FileUtils.write(destination, checkSum.getValue(), StandardCharsets.ISO_8859_1);
+				logger.debug("Content-MD5 header not set");
+				throw new ResourceDoesNotExistException("Content-MD5 header not set");
 			}
 
+			logger.debug("wrting md5 hash to " + destination.getAbsolutePath());
+			FileUtils.write(destination, checkSum.getValue(), StandardCharsets.ISO_8859_1);
+
 		} catch (IOException e) {
 
 			throw new TransferFailedException(e.getMessage(), e);
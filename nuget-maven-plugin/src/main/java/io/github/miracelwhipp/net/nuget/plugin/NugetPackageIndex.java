@@ -0,0 +1,321 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * This class holds the list of files contained in a nuget package. It is built once from the central directory of the
+ * package and stored next to it with the suffix {@value #SUFFIX_INDEX}, so selecting a file of the package needs
+ * neither the package nor the unpacked files.
+ * <p>
+ * Like nuget, the index looks up paths ignoring their case, so lib/NET45/Foo.dll finds lib/net45/foo.dll. The entries
+ * keep the paths as stored in the package.
+ *
+ * @author miracelwhipp
+ */
+public class NugetPackageIndex {
+
+	public static final String SUFFIX_INDEX = ".index";
+
+	private static final int MAGIC = 0x4e504958;
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int CACHE_SIZE = 256;
+
+	private static final Map<String, NugetPackageIndex> CACHE = new LinkedHashMap<String, NugetPackageIndex>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, NugetPackageIndex> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final long packageTimestamp;
+	private final List<Entry> entries;
+	private final Map<String, Entry> entriesByPath;
+
+	private NugetPackageIndex(long packageTimestamp, List<Entry> entries) {
+
+		this.packageTimestamp = packageTimestamp;
+		this.entries = Collections.unmodifiableList(entries);
+		this.entriesByPath = new HashMap<>(entries.size() * 2);
+
+		for (Entry entry : entries) {
+
+			entriesByPath.put(key(entry.getPath()), entry);
+		}
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	public boolean contains(String path) {
+
+		return entriesByPath.containsKey(key(path));
+	}
+
+	public Entry getEntry(String path) {
+
+		return entriesByPath.get(key(path));
+	}
+
+	/**
+	 * This method lists all entries with the given file name lying in a direct sub directory of the given directory.
+	 * These sub directories are usually named after the target framework. Names are compared ignoring their case.
+	 *
+	 * @param directory the directory to search in, ending with a slash
+	 * @param fileName  the name of the file to search for
+	 * @return the matching entries
+	 */
+	public List<Entry> findInFrameworkFolders(String directory, String fileName) {
+
+		List<Entry> result = new ArrayList<>();
+
+		for (Entry entry : entries) {
+
+			if (entry.getFrameworkFolder().isEmpty() || !entry.getFileName().equalsIgnoreCase(fileName)) {
+
+				continue;
+			}
+
+			if (entry.getPath().length() != directory.length() + entry.getFrameworkFolder().length() + 1 + fileName.length()) {
+
+				continue;
+			}
+
+			if (entry.getPath().regionMatches(true, 0, directory, 0, directory.length())) {
+
+				result.add(entry);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method returns the index of the given package. It is read from memory, from the index file next to the
+	 * package or - if neither is up to date - built from the package and stored.
+	 *
+	 * @param packageFile the nuget package
+	 * @return the index of the package
+	 * @throws IOException if neither the index nor the package can be read
+	 */
+	public static NugetPackageIndex forPackage(File packageFile) throws IOException {
+
+		String key = packageFile.getAbsolutePath();
+		long packageTimestamp = packageFile.lastModified();
+
+		synchronized (CACHE) {
+
+			NugetPackageIndex result = CACHE.get(key);
+
+			if (result != null && result.packageTimestamp == packageTimestamp) {
+
+				return result;
+			}
+		}
+
+		File indexFile = new File(key + SUFFIX_INDEX);
+
+		NugetPackageIndex result = read(indexFile, packageTimestamp);
+
+		if (result == null) {
+
+			result = build(packageFile, packageTimestamp);
+			write(result, indexFile);
+		}
+
+		synchronized (CACHE) {
+
+			CACHE.put(key, result);
+		}
+
+		return result;
+	}
+
+	private static NugetPackageIndex build(File packageFile, long packageTimestamp) throws IOException {
+
+		List<Entry> entries = new ArrayList<>();
+
+		try (ZipFile zipFile = new ZipFile(packageFile)) {
+
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+
+			while (zipEntries.hasMoreElements()) {
+
+				ZipEntry zipEntry = zipEntries.nextElement();
+
+				if (zipEntry.isDirectory()) {
+
+					continue;
+				}
+
+				entries.add(new Entry(zipEntry.getName(), zipEntry.getSize(), zipEntry.getCrc(),
+						frameworkFolder(zipEntry.getName())));
+			}
+		}
+
+		return new NugetPackageIndex(packageTimestamp, entries);
+	}
+
+	private static NugetPackageIndex read(File indexFile, long packageTimestamp) {
+
+		if (!indexFile.exists()) {
+
+			return null;
+		}
+
+		try (DataInputStream source = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+
+			if (source.readInt() != MAGIC || source.readInt() != FORMAT_VERSION || source.readLong() != packageTimestamp) {
+
+				return null;
+			}
+
+			int count = source.readInt();
+
+			List<Entry> entries = new ArrayList<>(count);
+
+			for (int index = 0; index < count; index++) {
+
+				entries.add(new Entry(source.readUTF(), source.readLong(), source.readLong(), source.readUTF()));
+			}
+
+			return new NugetPackageIndex(packageTimestamp, entries);
+
+		} catch (IOException e) {
+
+			// an unreadable index gets rebuilt.
+			return null;
+		}
+	}
+
+	private static void write(NugetPackageIndex index, File indexFile) throws IOException {
+
+		File tempFile = new File(indexFile.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+		try {
+
+			try (DataOutputStream target = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+
+				target.writeInt(MAGIC);
+				target.writeInt(FORMAT_VERSION);
+				target.writeLong(index.packageTimestamp);
+				target.writeInt(index.entries.size());
+
+				for (Entry entry : index.entries) {
+
+					target.writeUTF(entry.getPath());
+					target.writeLong(entry.getSize());
+					target.writeLong(entry.getCrc());
+					target.writeUTF(entry.getFrameworkFolder());
+				}
+			}
+
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static String key(String path) {
+
+		return path.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static String frameworkFolder(String path) {
+
+		int first = path.indexOf('/');
+
+		if (first < 0) {
+
+			return "";
+		}
+
+		int second = path.indexOf('/', first + 1);
+
+		if (second < 0) {
+
+			return "";
+		}
+
+		return path.substring(first + 1, second);
+	}
+
+	/**
+	 * This class describes a single file in a nuget package.
+	 */
+	public static final class Entry {
+
+		private final String path;
+		private final long size;
+		private final long crc;
+		private final String frameworkFolder;
+		private final String fileName;
+
+		private Entry(String path, long size, long crc, String frameworkFolder) {
+			this.path = path;
+			this.size = size;
+			this.crc = crc;
+			this.frameworkFolder = frameworkFolder;
+			this.fileName = path.substring(path.lastIndexOf('/') + 1);
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * This method returns the second segment of the path, which usually names the target framework, e.g.
+		 * netstandard2.0 for lib/netstandard2.0/Foo.dll.
+		 *
+		 * @return the framework folder or an empty string if the file does not lie in a sub directory
+		 */
+		public String getFrameworkFolder() {
+			return frameworkFolder;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry{" +
+					"path='" + path + '\'' +
+					", size=" + size +
+					", crc=" + crc +
+					", frameworkFolder='" + frameworkFolder + '\'' +
+					'}';
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This component provides the settings of the nuget wagon. Settings are read from the properties of the current
+ * project, the user properties of the session and the system properties - in that order.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = NugetWagonConfiguration.class, instantiationStrategy = "singleton")
+public class NugetWagonConfiguration {
+
+	public static final String PROPERTY_CONCURRENCY = "nuget.wagon.concurrency";
+	public static final String PROPERTY_LOCK_ACROSS_PROCESSES = "nuget.wagon.lockAcrossProcesses";
+	public static final String PROPERTY_PREFETCH = "nuget.wagon.prefetch";
+	public static final String PROPERTY_PREFETCH_THREADS = "nuget.wagon.prefetch.threads";
+	public static final String PROPERTY_PREFETCH_QUEUE_SIZE = "nuget.wagon.prefetch.queueSize";
+	public static final String PROPERTY_POM_CONVERTER = "nuget.wagon.pomConverter";
+	public static final String PROPERTY_INDEX_TTL = "nuget.wagon.index.ttl";
+	public static final String PROPERTY_SERVICE_INDEX_TTL = "nuget.wagon.serviceIndex.ttl";
+	public static final String PROPERTY_DEPENDENCY_METADATA = "nuget.wagon.dependencyMetadata";
+	public static final String PROPERTY_HTTP_MAX_CONNECTIONS = "nuget.wagon.http.maxConnections";
+	public static final String PROPERTY_HTTP_CONNECT_TIMEOUT = "nuget.wagon.http.connectTimeout";
+	public static final String PROPERTY_HTTP_SOCKET_TIMEOUT = "nuget.wagon.http.socketTimeout";
+	public static final String PROPERTY_VERIFY_PACKAGES = "nuget.wagon.verifyPackages";
+	public static final String PROPERTY_CONTENT_STORE = "nuget.wagon.contentStore";
+	public static final String PROPERTY_STATISTICS = "nuget.wagon.statistics";
+	public static final String PROPERTY_TRACE = "nuget.wagon.trace";
+
+	public static final String CACHE_DIRECTORY = ".nuget";
+
+	/**
+	 * This enum lists the ways concurrent requests to the wagon are handled.
+	 */
+	public enum ConcurrencyMode {
+
+		/**
+		 * All requests to the wagon are serialized.
+		 */
+		WAGON,
+
+		/**
+		 * Requests are only serialized if they concern the same nuget package.
+		 */
+		ARTIFACT
+	}
+
+	/**
+	 * This enum lists the ways a nuspec file is converted to a pom.
+	 */
+	public enum PomConverter {
+
+		/**
+		 * The nuspec is parsed to a document and transformed with nuspec-to-pom.xsl.
+		 */
+		XSLT,
+
+		/**
+		 * The nuspec is converted in a single pass by the {@link NuspecToPomConverter}.
+		 */
+		STAX
+	}
+
+	/**
+	 * This enum lists the sources the dependencies of a package are read from.
+	 */
+	public enum DependencyMetadata {
+
+		/**
+		 * The nuspec file of each package version is downloaded.
+		 */
+		NUSPEC,
+
+		/**
+		 * The dependencies of all versions of a package are read from the registration resource of the feed. This
+		 * requires the repository to be given by its service index.
+		 */
+		REGISTRATION
+	}
+
+	@Requirement
+	private MavenSession session;
+
+	public ConcurrencyMode getConcurrencyMode() {
+
+		String value = getProperty(PROPERTY_CONCURRENCY, ConcurrencyMode.ARTIFACT.name());
+
+		try {
+
+			return ConcurrencyMode.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+
+		} catch (IllegalArgumentException e) {
+
+			return ConcurrencyMode.ARTIFACT;
+		}
+	}
+
+	public PomConverter getPomConverter() {
+
+		String value = getProperty(PROPERTY_POM_CONVERTER, PomConverter.XSLT.name());
+
+		try {
+
+			return PomConverter.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+
+		} catch (IllegalArgumentException e) {
+
+			return PomConverter.XSLT;
+		}
+	}
+
+	public DependencyMetadata getDependencyMetadata() {
+
+		String value = getProperty(PROPERTY_DEPENDENCY_METADATA, DependencyMetadata.NUSPEC.name());
+
+		try {
+
+			return DependencyMetadata.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+
+		} catch (IllegalArgumentException e) {
+
+			return DependencyMetadata.NUSPEC;
+		}
+	}
+
+	/**
+	 * This method determines whether downloads and unpacking are guarded by file locks, so several processes can
+	 * share one local repository.
+	 *
+	 * @return true if file locks are used
+	 */
+	public boolean isLockAcrossProcesses() {
+
+		return getBooleanProperty(PROPERTY_LOCK_ACROSS_PROCESSES, false);
+	}
+
+	/**
+	 * This method determines whether the dependencies of a converted nuspec are downloaded in the background.
+	 *
+	 * @return true if dependencies are prefetched
+	 */
+	public boolean isPrefetch() {
+
+		return getBooleanProperty(PROPERTY_PREFETCH, false);
+	}
+
+	/**
+	 * This method determines whether downloaded packages are verified against the sha512 hash the repository publishes.
+	 *
+	 * @return true if packages are verified
+	 */
+	public boolean isVerifyPackages() {
+
+		return getBooleanProperty(PROPERTY_VERIFY_PACKAGES, true);
+	}
+
+	/**
+	 * This method determines whether extracted files are kept in the content addressed store, linked to from the
+	 * extraction directories.
+	 *
+	 * @return true if the content store is used
+	 */
+	public boolean isContentStore() {
+
+		return getBooleanProperty(PROPERTY_CONTENT_STORE, false);
+	}
+
+	/**
+	 * This method determines whether the time spent in the phases of the wagon is measured and reported when the
+	 * session ends.
+	 *
+	 * @return true if statistics are collected
+	 */
+	public boolean isStatistics() {
+
+		return getBooleanProperty(PROPERTY_STATISTICS, false);
+	}
+
+	/**
+	 * This method determines whether the phases of the wagon are recorded on a timeline per thread and written as a
+	 * chrome trace when the session ends.
+	 *
+	 * @return true if a trace is recorded
+	 */
+	public boolean isTrace() {
+
+		return getBooleanProperty(PROPERTY_TRACE, false);
+	}
+
+	public int getPrefetchThreads() {
+
+		return getIntProperty(PROPERTY_PREFETCH_THREADS, 4, 1);
+	}
+
+	public int getPrefetchQueueSize() {
+
+		return getIntProperty(PROPERTY_PREFETCH_QUEUE_SIZE, 256, 1);
+	}
+
+	/**
+	 * This method returns how long a downloaded index.json of a package is used without asking the repository whether
+	 * it has changed.
+	 *
+	 * @return the time to live in milliseconds
+	 */
+	public long getIndexTimeToLive() {
+
+		return TimeUnit.SECONDS.toMillis(getIntProperty(PROPERTY_INDEX_TTL, 0, 0));
+	}
+
+	/**
+	 * This method returns how long a downloaded service index of a nuget v3 feed is used in later sessions.
+	 *
+	 * @return the time to live in milliseconds
+	 */
+	public long getServiceIndexTimeToLive() {
+
+		return TimeUnit.SECONDS.toMillis(getIntProperty(PROPERTY_SERVICE_INDEX_TTL, 24 * 60 * 60, 0));
+	}
+
+	public int getHttpMaxConnections(String repositoryId) {
+
+		return getRepositoryIntProperty(PROPERTY_HTTP_MAX_CONNECTIONS, repositoryId, 20, 1);
+	}
+
+	/**
+	 * This method returns how long a direct http request waits for a connection.
+	 *
+	 * @param repositoryId the id of the repository the request is sent to
+	 * @return the timeout in milliseconds
+	 */
+	public int getHttpConnectTimeout(String repositoryId) {
+
+		return getRepositoryIntProperty(PROPERTY_HTTP_CONNECT_TIMEOUT, repositoryId, 10000, 0);
+	}
+
+	/**
+	 * This method returns how long a direct http request waits for data.
+	 *
+	 * @param repositoryId the id of the repository the request is sent to
+	 * @return the timeout in milliseconds
+	 */
+	public int getHttpSocketTimeout(String repositoryId) {
+
+		return getRepositoryIntProperty(PROPERTY_HTTP_SOCKET_TIMEOUT, repositoryId, 60000, 0);
+	}
+
+	/**
+	 * This method returns the directory the wagon keeps its own files in. It lies in the local repository.
+	 *
+	 * @return the cache directory
+	 */
+	public File getCacheDirectory() {
+
+		return new File(getLocalRepositoryDirectory(), CACHE_DIRECTORY);
+	}
+
+	/**
+	 * This method returns the directory reports of the wagon are written to. It is the target directory of the
+	 * project maven was started in or the cache directory if there is none.
+	 *
+	 * @return the report directory
+	 */
+	public File getReportDirectory() {
+
+		if (session != null && session.getExecutionRootDirectory() != null) {
+
+			return new File(session.getExecutionRootDirectory(), "target");
+		}
+
+		return getCacheDirectory();
+	}
+
+	public File getLocalRepositoryDirectory() {
+
+		if (session != null && session.getLocalRepository() != null) {
+
+			return new File(session.getLocalRepository().getBasedir());
+		}
+
+		return new File(System.getProperty("user.home"), ".m2" + File.separator + "repository");
+	}
+
+	/**
+	 * This method derives a file name from the url of a repository, so the cached files of different repositories
+	 * are kept apart.
+	 *
+	 * @param url the url of a repository
+	 * @return a file name containing host and path of the url
+	 */
+	public static String cacheName(String url) {
+
+		String result = url.replaceFirst("^[a-zA-Z]+://", "");
+
+		return result.replaceAll("[^a-zA-Z0-9.-]+", "_").replaceAll("^_+|_+$", "");
+	}
+
+	public boolean getBooleanProperty(String name, boolean defaultValue) {
+
+		return Boolean.parseBoolean(getProperty(name, Boolean.toString(defaultValue)).trim());
+	}
+
+	public int getIntProperty(String name, int defaultValue, int minimum) {
+
+		try {
+
+			return Math.max(minimum, Integer.parseInt(getProperty(name, Integer.toString(defaultValue)).trim()));
+
+		} catch (NumberFormatException e) {
+
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * This method reads a setting that may be given for a single repository by appending its id to the name of the
+	 * property, e.g. nuget.wagon.http.maxConnections.nuget. Otherwise the setting for all repositories is used.
+	 */
+	public int getRepositoryIntProperty(String name, String repositoryId, int defaultValue, int minimum) {
+
+		int result = getIntProperty(name, defaultValue, minimum);
+
+		if (repositoryId == null) {
+
+			return result;
+		}
+
+		return getIntProperty(name + "." + repositoryId, result, minimum);
+	}
+
+	public String getProperty(String name, String defaultValue) {
+
+		if (session != null) {
+
+			MavenProject project = session.getCurrentProject();
+
+			if (project != null && project.getProperties().containsKey(name)) {
+
+				return project.getProperties().getProperty(name);
+			}
+
+			if (session.getUserProperties().containsKey(name)) {
+
+				return session.getUserProperties().getProperty(name);
+			}
+		}
+
+		return System.getProperty(name, defaultValue);
+	}
+}
@@ -0,0 +1,489 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class converts a nuspec file to a pom in a single streaming pass. It produces the same elements as
+ * nuspec-to-pom.xsl, without building a document object model and without a transformation engine.
+ * <p>
+ * Elements of the nuspec are matched by their local name, so nuspec files with and without namespace are supported.
+ *
+ * @author miracelwhipp
+ */
+public final class NuspecToPomConverter {
+
+	private static final String POM_NAMESPACE = "http://maven.apache.org/POM/4.0.0";
+	private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+	private static final String INDENT = "    ";
+
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	private NuspecToPomConverter() {
+	}
+
+	/**
+	 * This method converts the given nuspec file to a pom. Only dependencies of the given target framework and
+	 * dependencies that are not grouped by target framework are taken over.
+	 *
+	 * @param nuspecFile      the nuspec file to convert
+	 * @param pomFile         the file to write the pom to
+	 * @param targetFramework the target framework of the dependency group to take over, e.g. .NETStandard2.0
+	 * @return the dependencies taken over
+	 * @throws IOException        if a file cannot be read or written
+	 * @throws XMLStreamException if the nuspec file is malformed
+	 */
+	public static List<Dependency> convert(File nuspecFile, File pomFile, String targetFramework) throws IOException, XMLStreamException {
+
+		try (InputStream source = new BufferedInputStream(new FileInputStream(nuspecFile));
+		     OutputStream target = new BufferedOutputStream(new FileOutputStream(pomFile))) {
+
+			return convert(source, target, targetFramework);
+		}
+	}
+
+	/**
+	 * This method converts the given nuspec to a pom.
+	 *
+	 * @param nuspec          the nuspec to convert
+	 * @param pom             the stream to write the pom to. It is not closed.
+	 * @param targetFramework the target framework of the dependency group to take over, e.g. .NETStandard2.0
+	 * @return the dependencies taken over
+	 * @throws XMLStreamException if the nuspec is malformed
+	 * @see #convert(File, File, String)
+	 */
+	public static List<Dependency> convert(InputStream nuspec, OutputStream pom, String targetFramework) throws XMLStreamException {
+
+		Specification specification = read(nuspec, targetFramework);
+
+		write(specification, pom);
+
+		return Collections.unmodifiableList(specification.dependencies);
+	}
+
+	/**
+	 * This method reads the dependencies {@link #convert(File, File, String)} would take over, without writing a pom.
+	 *
+	 * @param nuspecFile      the nuspec file to read
+	 * @param targetFramework the target framework of the dependency group to take over, e.g. .NETStandard2.0
+	 * @return the dependencies of the given target framework and the dependencies that are not grouped
+	 * @throws IOException        if the file cannot be read
+	 * @throws XMLStreamException if the nuspec file is malformed
+	 */
+	public static List<Dependency> readDependencies(File nuspecFile, String targetFramework) throws IOException, XMLStreamException {
+
+		try (InputStream source = new BufferedInputStream(new FileInputStream(nuspecFile))) {
+
+			return Collections.unmodifiableList(read(source, targetFramework).dependencies);
+		}
+	}
+
+	/**
+	 * This method lists the target frameworks the dependencies of the given nuspec file are grouped by. Only the groups
+	 * of package/metadata/dependencies count - groups of e.g. frameworkReferences do not group dependencies.
+	 *
+	 * @param nuspecFile the nuspec file to read
+	 * @return the values of the targetFramework attributes of the dependency groups in document order
+	 * @throws IOException        if the file cannot be read
+	 * @throws XMLStreamException if the nuspec file is malformed
+	 */
+	public static List<String> readTargetFrameworks(File nuspecFile) throws IOException, XMLStreamException {
+
+		List<String> result = new ArrayList<>();
+
+		try (InputStream source = new BufferedInputStream(new FileInputStream(nuspecFile))) {
+
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(source);
+
+			try {
+
+				reader.nextTag();
+
+				if (!"package".equals(reader.getLocalName())) {
+
+					throw new XMLStreamException("not a nuspec file. root element is " + reader.getLocalName(), reader.getLocation());
+				}
+
+				while (next(reader) == XMLStreamConstants.START_ELEMENT) {
+
+					if ("metadata".equals(reader.getLocalName())) {
+
+						readTargetFrameworks(reader, result);
+
+						// there is only one metadata element, nothing after it is of interest.
+						return result;
+					}
+
+					skipElement(reader);
+				}
+
+			} finally {
+
+				reader.close();
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method collects the target frameworks of the groups in the dependencies element below the current
+	 * metadata element.
+	 */
+	private static void readTargetFrameworks(XMLStreamReader reader, List<String> targetFrameworks) throws XMLStreamException {
+
+		while (next(reader) == XMLStreamConstants.START_ELEMENT) {
+
+			if (!"dependencies".equals(reader.getLocalName())) {
+
+				skipElement(reader);
+				continue;
+			}
+
+			while (next(reader) == XMLStreamConstants.START_ELEMENT) {
+
+				String groupFramework = "group".equals(reader.getLocalName()) ? reader.getAttributeValue(null, "targetFramework") : null;
+
+				if (groupFramework != null && !targetFrameworks.contains(groupFramework)) {
+
+					targetFrameworks.add(groupFramework);
+				}
+
+				skipElement(reader);
+			}
+
+			return;
+		}
+	}
+
+	private static Specification read(InputStream nuspec, String targetFramework) throws XMLStreamException {
+
+		XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(nuspec);
+
+		try {
+
+			reader.nextTag();
+
+			if (!"package".equals(reader.getLocalName())) {
+
+				throw new XMLStreamException("not a nuspec file. root element is " + reader.getLocalName(), reader.getLocation());
+			}
+
+			Specification result = new Specification();
+
+			while (next(reader) == XMLStreamConstants.START_ELEMENT) {
+
+				if ("metadata".equals(reader.getLocalName())) {
+
+					readMetadata(reader, result, targetFramework);
+
+				} else {
+
+					skipElement(reader);
+				}
+			}
+
+			return result;
+
+		} finally {
+
+			reader.close();
+		}
+	}
+
+	private static void readMetadata(XMLStreamReader reader, Specification specification, String targetFramework) throws XMLStreamException {
+
+		while (next(reader) == XMLStreamConstants.START_ELEMENT) {
+
+			String name = reader.getLocalName();
+
+			if ("id".equals(name) && specification.id == null) {
+
+				specification.id = readText(reader);
+
+			} else if ("version".equals(name) && specification.version == null) {
+
+				specification.version = readText(reader);
+
+			} else if ("dependencies".equals(name)) {
+
+				readDependencies(reader, specification.dependencies, targetFramework);
+
+			} else {
+
+				skipElement(reader);
+			}
+		}
+	}
+
+	/**
+	 * This method collects the dependency elements below the current element, leaving out groups of other target
+	 * frameworks - just like the built in templates of xslt would.
+	 */
+	private static void readDependencies(XMLStreamReader reader, List<Dependency> dependencies, String targetFramework) throws XMLStreamException {
+
+		while (next(reader) == XMLStreamConstants.START_ELEMENT) {
+
+			String name = reader.getLocalName();
+
+			if ("dependency".equals(name)) {
+
+				dependencies.add(new Dependency(attribute(reader, "id"), attribute(reader, "version")));
+				skipElement(reader);
+
+			} else if ("group".equals(name)) {
+
+				String groupFramework = reader.getAttributeValue(null, "targetFramework");
+
+				if (groupFramework != null && !groupFramework.equals(targetFramework)) {
+
+					skipElement(reader);
+
+				} else {
+
+					readDependencies(reader, dependencies, targetFramework);
+				}
+
+			} else {
+
+				readDependencies(reader, dependencies, targetFramework);
+			}
+		}
+	}
+
+	private static void write(Specification specification, OutputStream pom) throws XMLStreamException {
+
+		XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(pom, "UTF-8");
+
+		try {
+
+			writer.writeStartDocument("UTF-8", "1.0");
+			newLine(writer, 0);
+
+			writer.setDefaultNamespace(POM_NAMESPACE);
+			writer.writeStartElement(POM_NAMESPACE, "project");
+			writer.writeDefaultNamespace(POM_NAMESPACE);
+			writer.writeNamespace("xsi", XSI_NAMESPACE);
+
+			writeElement(writer, 1, "modelVersion", "4.0.0");
+			writeElement(writer, 1, "groupId", specification.getId());
+			writeElement(writer, 1, "artifactId", specification.getId());
+			writeElement(writer, 1, "version", specification.getVersion());
+			writeElement(writer, 1, "packaging", "pom");
+
+			newLine(writer, 1);
+			writer.writeStartElement(POM_NAMESPACE, "dependencies");
+
+			for (Dependency dependency : specification.dependencies) {
+
+				writeDependency(writer, dependency, NugetArtifact.TYPE_PACKAGE, false);
+				writeDependency(writer, dependency, NugetArtifact.TYPE_DLL, true);
+			}
+
+			if (!specification.dependencies.isEmpty()) {
+
+				newLine(writer, 1);
+			}
+
+			writer.writeEndElement();
+
+			newLine(writer, 0);
+			writer.writeEndElement();
+			newLine(writer, 0);
+
+			writer.writeEndDocument();
+			writer.flush();
+
+		} finally {
+
+			writer.close();
+		}
+	}
+
+	private static void writeDependency(XMLStreamWriter writer, Dependency dependency, String type, boolean optional) throws XMLStreamException {
+
+		newLine(writer, 2);
+		writer.writeStartElement(POM_NAMESPACE, "dependency");
+
+		writeElement(writer, 3, "groupId", dependency.id);
+		writeElement(writer, 3, "artifactId", dependency.id);
+		writeElement(writer, 3, "version", dependency.version);
+		writeElement(writer, 3, "type", type);
+
+		if (optional) {
+
+			writeElement(writer, 3, "optional", "true");
+		}
+
+		newLine(writer, 2);
+		writer.writeEndElement();
+	}
+
+	private static void writeElement(XMLStreamWriter writer, int depth, String name, String text) throws XMLStreamException {
+
+		newLine(writer, depth);
+		writer.writeStartElement(POM_NAMESPACE, name);
+		writer.writeCharacters(text);
+		writer.writeEndElement();
+	}
+
+	private static void newLine(XMLStreamWriter writer, int depth) throws XMLStreamException {
+
+		writer.writeCharacters("\n");
+
+		for (int index = 0; index < depth; index++) {
+
+			writer.writeCharacters(INDENT);
+		}
+	}
+
+	private static String attribute(XMLStreamReader reader, String name) {
+
+		String result = reader.getAttributeValue(null, name);
+
+		return result == null ? "" : result;
+	}
+
+	/**
+	 * This method returns the text of all descendants of the current element and moves behind its end.
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+
+		StringBuilder result = new StringBuilder();
+
+		int depth = 1;
+
+		while (depth > 0) {
+
+			switch (reader.next()) {
+
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					break;
+
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					result.append(reader.getText());
+					break;
+
+				default:
+					break;
+			}
+		}
+
+		return result.toString();
+	}
+
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+
+		while (depth > 0) {
+
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+
+				depth++;
+
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * This method moves to the next start or end element, skipping text, comments and processing instructions.
+	 */
+	private static int next(XMLStreamReader reader) throws XMLStreamException {
+
+		while (true) {
+
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT) {
+
+				return event;
+			}
+
+			if (event == XMLStreamConstants.END_DOCUMENT) {
+
+				throw new XMLStreamException("unexpected end of nuspec file", reader.getLocation());
+			}
+		}
+	}
+
+	private static XMLInputFactory createInputFactory() {
+
+		XMLInputFactory result = XMLInputFactory.newInstance();
+
+		result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		result.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+		return result;
+	}
+
+	private static final class Specification {
+
+		private String id;
+		private String version;
+		private final List<Dependency> dependencies = new ArrayList<>();
+
+		private String getId() {
+			return id == null ? "" : id;
+		}
+
+		private String getVersion() {
+			return version == null ? "" : version;
+		}
+	}
+
+	/**
+	 * This class represents a dependency of a nuspec file.
+	 */
+	public static final class Dependency {
+
+		private final String id;
+		private final String version;
+
+		private Dependency(String id, String version) {
+			this.id = id;
+			this.version = version;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return the version as given in the nuspec file, which may be a version range
+		 */
+		public String getVersion() {
+			return version;
+		}
+	}
+}
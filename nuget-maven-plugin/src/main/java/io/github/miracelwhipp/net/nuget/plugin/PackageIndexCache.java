@@ -0,0 +1,354 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import io.github.miracelwhipp.net.common.LockTable;
+import io.github.miracelwhipp.net.common.ProcessLock;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This component keeps the index.json files of nuget packages - the lists of their versions - in the local repository.
+ * Along with each index it stores the ETag and Last-Modified header the repository sent, so an index that has not
+ * changed is revalidated by a conditional request that costs one round trip and no content.
+ * <p>
+ * The conditional requests carry the credentials and use the proxy the delegate wagon was connected with. If the
+ * repository refuses them, the index is downloaded completely with the delegate wagon from then on. If a request fails
+ * otherwise, only that index is downloaded with the delegate wagon.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = PackageIndexCache.class, instantiationStrategy = "singleton")
+public class PackageIndexCache {
+
+	public static final String INDEX_DIRECTORY = "index";
+	public static final String INDEX_FILE = "index.json";
+	public static final String SUFFIX_VALIDATORS = ".properties";
+
+	private static final String VALIDATOR_ETAG = "etag";
+	private static final String VALIDATOR_LAST_MODIFIED = "lastModified";
+	private static final String VALIDATOR_VALIDATED = "validated";
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	@Requirement
+	private NugetHttpClients httpClients;
+
+	private final LockTable locks = new LockTable();
+
+	private final Set<String> indirectRepositories = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * This method provides the current index.json of the given package. The cached index is used as it is, if it was
+	 * validated within the configured time to live. Otherwise it is revalidated with the repository.
+	 *
+	 * @param delegate the wagon connected to the repository
+	 * @param artifact the metadata artifact of the package
+	 * @return the cached index file. Its modification time is the time its content last changed.
+	 */
+	public File getIndex(Wagon delegate, NugetArtifact artifact) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		Repository repository = delegate.getRepository();
+
+		File indexFile = indexFile(repository.getUrl(), artifact);
+
+		try (LockTable.Lock ignored = locks.lock(indexFile.getAbsolutePath())) {
+
+			if (!configuration.isLockAcrossProcesses()) {
+
+				return getIndex(delegate, repository, artifact, indexFile);
+			}
+
+			try (ProcessLock ignoredFileLock = ProcessLock.acquire(indexFile)) {
+
+				return getIndex(delegate, repository, artifact, indexFile);
+			}
+
+		} catch (IOException e) {
+
+			throw new TransferFailedException(e.getMessage(), e);
+		}
+	}
+
+	private File getIndex(Wagon delegate, Repository repository, NugetArtifact artifact, File indexFile) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		File validatorFile = new File(indexFile.getAbsolutePath() + SUFFIX_VALIDATORS);
+
+		Properties validators = indexFile.exists() ? readValidators(validatorFile) : new Properties();
+
+		if (indexFile.exists() && System.currentTimeMillis() - validated(validators) < configuration.getIndexTimeToLive()) {
+
+			logger.debug("index " + indexFile.getAbsolutePath() + " is fresh. Nothing to be done.");
+			return indexFile;
+		}
+
+		if (!indirectRepositories.contains(repository.getUrl()) && revalidate(delegate, repository, artifact, indexFile, validators)) {
+
+			validators.setProperty(VALIDATOR_VALIDATED, Long.toString(System.currentTimeMillis()));
+			writeValidators(validatorFile, validators);
+
+			return indexFile;
+		}
+
+		File tempFile = tempFile(indexFile);
+
+		try {
+
+			logger.debug("downloading index " + artifact.resourceString() + " with delegate");
+			delegate.get(artifact.resourceString(), tempFile);
+
+			moveFile(tempFile, indexFile);
+
+		} finally {
+
+			FileUtils.deleteQuietly(tempFile);
+		}
+
+		Properties downloaded = new Properties();
+		downloaded.setProperty(VALIDATOR_VALIDATED, Long.toString(System.currentTimeMillis()));
+		writeValidators(validatorFile, downloaded);
+
+		return indexFile;
+	}
+
+	/**
+	 * This method asks the repository for the index, sending the stored validators.
+	 *
+	 * @return false if the repository could not be asked directly
+	 */
+	private boolean revalidate(Wagon delegate, Repository repository, NugetArtifact artifact, File indexFile, Properties validators) throws TransferFailedException, ResourceDoesNotExistException {
+
+		HttpGet request = new HttpGet(resourceUrl(repository.getUrl(), artifact.resourceString()));
+
+		String etag = validators.getProperty(VALIDATOR_ETAG);
+		String lastModified = validators.getProperty(VALIDATOR_LAST_MODIFIED);
+
+		if (etag != null) {
+
+			request.setHeader("If-None-Match", etag);
+		}
+
+		if (lastModified != null) {
+
+			request.setHeader("If-Modified-Since", lastModified);
+		}
+
+		logger.debug("revalidating index " + request.getURI() + " etag = " + etag + " last modified = " + lastModified);
+
+		AuthenticationInfo authenticationInfo = NugetHttpClients.getAuthenticationInfo(delegate);
+
+		boolean authenticated = authenticationInfo != null && authenticationInfo.getUserName() != null;
+
+		try (CloseableHttpResponse response = httpClients.execute(delegate, request)) {
+
+			int status = response.getStatusLine().getStatusCode();
+
+			if (status == HttpStatus.SC_NOT_MODIFIED) {
+
+				logger.debug("index " + artifact.resourceString() + " not modified.");
+				return true;
+			}
+
+			if (status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_FORBIDDEN) {
+
+				logger.debug("status " + status + " revalidating " + request.getURI() + ". using delegate from now on.");
+				indirectRepositories.add(repository.getUrl());
+
+				return false;
+			}
+
+			if (status == HttpStatus.SC_NOT_FOUND) {
+
+				if (authenticated) {
+
+					throw new ResourceDoesNotExistException("resource " + request.getURI() + " does not exist.");
+				}
+
+				// feeds may hide their packages from anonymous requests.
+				logger.debug("status " + status + " revalidating " + request.getURI() + " without credentials. using delegate.");
+
+				return false;
+			}
+
+			if (status != HttpStatus.SC_OK || response.getEntity() == null) {
+
+				logger.debug("unexpected status " + status + " revalidating " + request.getURI() + ". using delegate.");
+
+				return false;
+			}
+
+			writeEntity(response.getEntity(), indexFile);
+
+			setValidator(validators, VALIDATOR_ETAG, response.getFirstHeader("ETag"));
+			setValidator(validators, VALIDATOR_LAST_MODIFIED, response.getFirstHeader("Last-Modified"));
+
+			return true;
+
+		} catch (IOException e) {
+
+			logger.debug("revalidating " + request.getURI() + " failed. using delegate.", e);
+
+			return false;
+		}
+	}
+
+	private void writeEntity(HttpEntity entity, File indexFile) throws IOException, TransferFailedException {
+
+		File tempFile = tempFile(indexFile);
+
+		try {
+
+			try (OutputStream target = new FileOutputStream(tempFile)) {
+
+				entity.writeTo(target);
+			}
+
+			moveFile(tempFile, indexFile);
+
+		} finally {
+
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	private File indexFile(String repositoryUrl, NugetArtifact artifact) {
+
+		File repositoryDirectory = new File(new File(configuration.getCacheDirectory(), INDEX_DIRECTORY), NugetWagonConfiguration.cacheName(repositoryUrl));
+
+		return new File(new File(repositoryDirectory, artifact.getGroupId().toLowerCase(Locale.ENGLISH)), INDEX_FILE);
+	}
+
+	private static File tempFile(File file) throws TransferFailedException {
+
+		try {
+
+			FileUtils.forceMkdir(file.getParentFile());
+
+		} catch (IOException e) {
+
+			throw new TransferFailedException(e.getMessage(), e);
+		}
+
+		return new File(file.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+	}
+
+	private static void moveFile(File source, File target) throws TransferFailedException {
+
+		try {
+
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+
+			throw new TransferFailedException("cannot rename file. source = " + source.getAbsolutePath() + " target = " + target.getAbsolutePath(), e);
+		}
+	}
+
+	private static long validated(Properties validators) {
+
+		try {
+
+			return Long.parseLong(validators.getProperty(VALIDATOR_VALIDATED, "0"));
+
+		} catch (NumberFormatException e) {
+
+			return 0;
+		}
+	}
+
+	private static void setValidator(Properties validators, String name, Header header) {
+
+		if (header == null) {
+
+			validators.remove(name);
+			return;
+		}
+
+		validators.setProperty(name, header.getValue());
+	}
+
+	private Properties readValidators(File validatorFile) {
+
+		Properties result = new Properties();
+
+		if (!validatorFile.exists()) {
+
+			return result;
+		}
+
+		try (InputStream source = new FileInputStream(validatorFile)) {
+
+			result.load(source);
+
+		} catch (IOException | IllegalArgumentException e) {
+
+			logger.debug("unable to read " + validatorFile.getAbsolutePath() + ". revalidating without validators.", e);
+			result.clear();
+		}
+
+		return result;
+	}
+
+	private static void writeValidators(File validatorFile, Properties validators) throws TransferFailedException {
+
+		File tempFile = tempFile(validatorFile);
+
+		try {
+
+			try (OutputStream target = new FileOutputStream(tempFile)) {
+
+				validators.store(target, null);
+			}
+
+			moveFile(tempFile, validatorFile);
+
+		} catch (IOException e) {
+
+			throw new TransferFailedException(e.getMessage(), e);
+
+		} finally {
+
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	static String resourceUrl(String repositoryUrl, String resource) {
+
+		if (repositoryUrl.endsWith("/")) {
+
+			return repositoryUrl + resource;
+		}
+
+		return repositoryUrl + "/" + resource;
+	}
+}
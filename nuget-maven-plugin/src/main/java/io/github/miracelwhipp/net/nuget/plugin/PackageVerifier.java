@@ -0,0 +1,362 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import io.github.miracelwhipp.net.common.Streams;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This component verifies downloaded nuget packages against the sha512 hash the repository publishes next to them
+ * (.nupkg.sha512). The hash of a package is computed from the data passing the delegate wagon while the download is
+ * written, so verification reads nothing twice. A package that does not match is rejected before it is moved to its
+ * destination.
+ * <p>
+ * The hashes are requested with the credentials and the proxy of the delegate wagon. Repositories that answer with
+ * 404 publish no hashes and are asked only once per session. Whenever a package cannot be verified, a warning is
+ * logged.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = PackageVerifier.class, instantiationStrategy = "singleton")
+public class PackageVerifier implements TransferListener {
+
+	public static final String SUFFIX_SHA512 = ".sha512";
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	@Requirement
+	private NugetHttpClients httpClients;
+
+	private final ConcurrentMap<String, RunningDigest> runningDigests = new ConcurrentHashMap<>();
+
+	private final Set<String> repositoriesWithoutHashes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * This method downloads a resource with the delegate wagon, verifying it if it is a package.
+	 *
+	 * @param delegate     the wagon connected to the repository
+	 * @param resourceName the resource to download
+	 * @param destination  the file to download to
+	 */
+	public void get(Wagon delegate, String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		if (!isVerified(delegate, resourceName)) {
+
+			delegate.get(resourceName, destination);
+			return;
+		}
+
+		RunningDigest digest = startDigest(delegate, resourceName);
+
+		try {
+
+			delegate.get(resourceName, destination);
+
+		} finally {
+
+			runningDigests.remove(resourceName, digest);
+		}
+
+		verify(delegate, resourceName, destination, digest);
+	}
+
+	/**
+	 * This method downloads a resource with the delegate wagon if it is newer than the given timestamp, verifying it
+	 * if it is a package.
+	 *
+	 * @param delegate     the wagon connected to the repository
+	 * @param resourceName the resource to download
+	 * @param destination  the file to download to
+	 * @param timestamp    the timestamp of the existing file
+	 * @return true if the resource was downloaded
+	 */
+	public boolean getIfNewer(Wagon delegate, String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		if (!isVerified(delegate, resourceName)) {
+
+			return delegate.getIfNewer(resourceName, destination, timestamp);
+		}
+
+		RunningDigest digest = startDigest(delegate, resourceName);
+
+		boolean result;
+
+		try {
+
+			result = delegate.getIfNewer(resourceName, destination, timestamp);
+
+		} finally {
+
+			runningDigests.remove(resourceName, digest);
+		}
+
+		if (result) {
+
+			verify(delegate, resourceName, destination, digest);
+		}
+
+		return result;
+	}
+
+	private boolean isVerified(Wagon delegate, String resourceName) {
+
+		return resourceName.endsWith(NugetArtifact.EXTENSION_PACKAGE)
+				&& configuration.isVerifyPackages()
+				&& !repositoriesWithoutHashes.contains(delegate.getRepository().getUrl());
+	}
+
+	private RunningDigest startDigest(Wagon delegate, String resourceName) {
+
+		if (!delegate.hasTransferListener(this)) {
+
+			delegate.addTransferListener(this);
+		}
+
+		RunningDigest result = new RunningDigest();
+
+		// downloads of the same resource are joined by the download manager, so there is only one at a time.
+		runningDigests.put(resourceName, result);
+
+		return result;
+	}
+
+	private void verify(Wagon delegate, String resourceName, File file, RunningDigest digest) throws TransferFailedException {
+
+		Repository repository = delegate.getRepository();
+
+		byte[] expected = expectedHash(delegate, repository, resourceName);
+
+		if (expected == null) {
+
+			return;
+		}
+
+		byte[] actual = digest.complete(file);
+
+		if (actual == null) {
+
+			logger.debug("download of " + resourceName + " was not reported completely. reading " + file.getAbsolutePath());
+			actual = digest(file);
+		}
+
+		if (!Arrays.equals(expected, actual)) {
+
+			throw new TransferFailedException("sha512 hash of " + resourceName + " does not match the hash published by "
+					+ repository.getUrl() + ". expected = " + ChecksumCache.hex(expected) + " actual = " + ChecksumCache.hex(actual));
+		}
+
+		logger.debug("sha512 hash of " + resourceName + " verified.");
+	}
+
+	private byte[] expectedHash(Wagon delegate, Repository repository, String resourceName) {
+
+		HttpGet request = new HttpGet(PackageIndexCache.resourceUrl(repository.getUrl(), resourceName + SUFFIX_SHA512));
+
+		try (CloseableHttpResponse response = httpClients.execute(delegate, request)) {
+
+			int status = response.getStatusLine().getStatusCode();
+
+			if (status == HttpStatus.SC_NOT_FOUND) {
+
+				if (repositoriesWithoutHashes.add(repository.getUrl())) {
+
+					logger.warn("repository " + repository.getUrl() + " publishes no package hashes. packages downloaded from it are not verified.");
+				}
+
+				return null;
+			}
+
+			if (status != HttpStatus.SC_OK || response.getEntity() == null) {
+
+				logger.warn("unable to download hash " + request.getURI() + " (status " + status + "). skipping verification of " + resourceName + ".");
+				return null;
+			}
+
+			byte[] result = parseHash(EntityUtils.toString(response.getEntity(), StandardCharsets.US_ASCII).trim());
+
+			if (result == null) {
+
+				logger.warn("unable to parse hash " + request.getURI() + ". skipping verification of " + resourceName + ".");
+			}
+
+			return result;
+
+		} catch (IOException e) {
+
+			logger.warn("unable to download hash " + request.getURI() + ": " + e.getMessage() + ". skipping verification of " + resourceName + ".");
+			logger.debug("unable to download hash " + request.getURI(), e);
+
+			return null;
+		}
+	}
+
+	/**
+	 * This method reads a sha512 hash. Nuget writes it base64 encoded, hexadecimal hashes are accepted as well.
+	 *
+	 * @return the hash or null if the text is no sha512 hash
+	 */
+	static byte[] parseHash(String text) {
+
+		if (text.length() == 128) {
+
+			byte[] result = new byte[64];
+
+			for (int index = 0; index < result.length; index++) {
+
+				int high = Character.digit(text.charAt(2 * index), 16);
+				int low = Character.digit(text.charAt(2 * index + 1), 16);
+
+				if (high < 0 || low < 0) {
+
+					return null;
+				}
+
+				result[index] = (byte) (high << 4 | low);
+			}
+
+			return result;
+		}
+
+		try {
+
+			byte[] result = Base64.getDecoder().decode(text);
+
+			return result.length == 64 ? result : null;
+
+		} catch (IllegalArgumentException e) {
+
+			return null;
+		}
+	}
+
+	@Override
+	public void transferInitiated(TransferEvent transferEvent) {
+	}
+
+	@Override
+	public void transferStarted(TransferEvent transferEvent) {
+
+		RunningDigest digest = runningDigests.get(transferEvent.getResource().getName());
+
+		if (digest != null) {
+
+			// a retried transfer starts from the beginning.
+			digest.reset();
+		}
+	}
+
+	@Override
+	public void transferProgress(TransferEvent transferEvent, byte[] buffer, int length) {
+
+		RunningDigest digest = runningDigests.get(transferEvent.getResource().getName());
+
+		if (digest != null) {
+
+			digest.update(buffer, length);
+		}
+	}
+
+	@Override
+	public void transferCompleted(TransferEvent transferEvent) {
+	}
+
+	@Override
+	public void transferError(TransferEvent transferEvent) {
+	}
+
+	@Override
+	public void debug(String message) {
+	}
+
+	/**
+	 * This class holds the hash of a running download.
+	 */
+	private static final class RunningDigest {
+
+		private final MessageDigest digest = newDigest();
+		private long length;
+
+		private synchronized void update(byte[] buffer, int bufferLength) {
+
+			digest.update(buffer, 0, bufferLength);
+			length += bufferLength;
+		}
+
+		private synchronized void reset() {
+
+			digest.reset();
+			length = 0;
+		}
+
+		/**
+		 * This method returns the hash of the downloaded file.
+		 *
+		 * @return the hash or null if the delegate did not report all the data it wrote
+		 */
+		private synchronized byte[] complete(File file) {
+
+			if (length != file.length()) {
+
+				return null;
+			}
+
+			return digest.digest();
+		}
+	}
+
+	private static byte[] digest(File file) throws TransferFailedException {
+
+		MessageDigest result = newDigest();
+
+		try {
+
+			Streams.digest(file, result);
+
+		} catch (IOException e) {
+
+			throw new TransferFailedException(e.getMessage(), e);
+		}
+
+		return result.digest();
+	}
+
+	private static MessageDigest newDigest() {
+
+		try {
+
+			return MessageDigest.getInstance("SHA-512");
+
+		} catch (NoSuchAlgorithmException e) {
+
+			// every java platform is required to support sha-512 since java 8.
+			throw new IllegalStateException(e);
+		}
+	}
+}
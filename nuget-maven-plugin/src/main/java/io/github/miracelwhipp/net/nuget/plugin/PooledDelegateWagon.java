@@ -0,0 +1,970 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.authentication.AuthenticationException;
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+import org.apache.maven.wagon.events.SessionListener;
+import org.apache.maven.wagon.events.TransferListener;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+import org.apache.maven.wagon.proxy.ProxyInfoProvider;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class lets several threads transfer with the delegate wagon at the same time. A wagon like the http wagon
+ * holds the response of its current transfer and closes it when the next transfer ends, so it must not be used by
+ * two threads at once. This wagon hands each transfer a wagon of its own: an idle wagon of the current connection,
+ * or an additional wagon looked up from the container and connected like the delegate. A wagon is never handed
+ * out twice and returns to the idle wagons only if its connection is still open.
+ * <p>
+ * There is one connection per repository, connecting to a repository the wagon is already connected to shares it, as
+ * maven connects the wagon once per transporter. Transfers use the connection that was made last. The wagon
+ * does not learn which transporter disconnects it, so disconnects release the connects in the order they were made
+ * and a connection is closed when all of its own connects have been released. Closing it waits for its running
+ * transfers to end and disconnects all of its wagons. A disconnect without a connect is ignored.
+ * <p>
+ * Listeners and timeouts are applied to all of the wagons, everything else is answered by the delegate.
+ * <p>
+ * Work that outlives the request it was started by, like prefetching, transfers with a {@link #pin() pinned} wagon.
+ * It keeps using the connection it was pinned to and fails once that connection has been closed.
+ *
+ * @author miracelwhipp
+ */
+public class PooledDelegateWagon implements Wagon, WagonConnection {
+
+	private final PlexusContainer container;
+	private final String hint;
+	private final Wagon delegate;
+	private final Logger logger;
+
+	private final List<TransferListener> transferListeners = new CopyOnWriteArrayList<>();
+
+	private final Map<String, Generation> generations = new LinkedHashMap<>();
+	private final Deque<Generation> connects = new ArrayDeque<>();
+
+	private Generation current;
+	private boolean delegateInUse;
+
+	/**
+	 * @param container the container to look up additional wagons in
+	 * @param hint      the role hint of the delegate
+	 * @param delegate  the delegate wagon
+	 * @param logger    the logger
+	 */
+	public PooledDelegateWagon(PlexusContainer container, String hint, Wagon delegate, Logger logger) {
+		this.container = container;
+		this.hint = hint;
+		this.delegate = delegate;
+		this.logger = logger;
+	}
+
+	private Lease acquire() throws TransferFailedException {
+
+		Generation generation;
+
+		synchronized (this) {
+
+			generation = current;
+		}
+
+		if (generation == null) {
+
+			throw new TransferFailedException(hint + " wagon is not connected");
+		}
+
+		return acquire(generation);
+	}
+
+	private Lease acquire(Generation generation) throws TransferFailedException {
+
+		while (true) {
+
+			synchronized (this) {
+
+				while (true) {
+
+					if (generation.closed) {
+
+						throw new TransferFailedException("connection to " + generation.connection.repository.getUrl() + " has been closed");
+					}
+
+					Wagon idle = generation.idleWagons.poll();
+
+					if (idle != null) {
+
+						generation.checkedOut.add(idle);
+
+						return new Lease(generation, idle);
+					}
+
+					if (!generation.exhausted) {
+
+						generation.pending++;
+						break;
+					}
+
+					try {
+
+						wait();
+
+					} catch (InterruptedException e) {
+
+						Thread.currentThread().interrupt();
+						throw new TransferFailedException("interrupted while waiting for an idle " + hint + " wagon", e);
+					}
+				}
+			}
+
+			Wagon result = createWagon(generation);
+
+			if (result != null) {
+
+				return new Lease(generation, result);
+			}
+		}
+	}
+
+	/**
+	 * This method creates an additional wagon for the given connection. It returns null if the container does not
+	 * create new wagons, so the caller has to wait for an idle one.
+	 */
+	private Wagon createWagon(Generation generation) throws TransferFailedException {
+
+		Wagon result;
+
+		try {
+
+			result = container.lookup(Wagon.class, hint);
+
+		} catch (ComponentLookupException e) {
+
+			returnPending(generation);
+			throw new TransferFailedException("unable to create an additional " + hint + " wagon: " + e.getMessage(), e);
+		}
+
+		synchronized (this) {
+
+			if (result == delegate || generation.wagons.contains(result)) {
+
+				logger.debug(hint + " wagons are not created per lookup. " + generation.wagons.size() + " wagons are connected.");
+
+				generation.exhausted = true;
+				generation.pending--;
+				notifyAll();
+
+				return null;
+			}
+		}
+
+		result.setTimeout(delegate.getTimeout());
+		result.setReadTimeout(delegate.getReadTimeout());
+		result.setInteractive(delegate.isInteractive());
+
+		for (TransferListener listener : transferListeners) {
+
+			result.addTransferListener(listener);
+		}
+
+		try {
+
+			generation.connection.connect(result);
+
+		} catch (ConnectionException | AuthenticationException e) {
+
+			returnPending(generation);
+			releaseToContainer(result);
+			throw new TransferFailedException("unable to connect an additional " + hint + " wagon: " + e.getMessage(), e);
+		}
+
+		synchronized (this) {
+
+			generation.pending--;
+			notifyAll();
+
+			if (!generation.closed) {
+
+				generation.wagons.add(result);
+				generation.checkedOut.add(result);
+
+				logger.debug("created additional " + hint + " wagon for " + generation.connection.repository.getUrl() + ". "
+						+ generation.wagons.size() + " wagons are connected.");
+
+				return result;
+			}
+		}
+
+		dispose(result);
+		throw new TransferFailedException("connection to " + generation.connection.repository.getUrl() + " has been closed");
+	}
+
+	private synchronized void returnPending(Generation generation) {
+
+		generation.pending--;
+		notifyAll();
+	}
+
+	private void release(Lease lease) {
+
+		boolean disposeWagon;
+
+		synchronized (this) {
+
+			Generation generation = lease.generation;
+
+			if (!generation.checkedOut.remove(lease.wagon)) {
+
+				return;
+			}
+
+			disposeWagon = generation.disposed;
+
+			if (!generation.closed) {
+
+				generation.idleWagons.push(lease.wagon);
+			}
+
+			notifyAll();
+		}
+
+		if (disposeWagon) {
+
+			dispose(lease.wagon);
+		}
+	}
+
+	private void dispose(Wagon wagon) {
+
+		try {
+
+			wagon.disconnect();
+
+		} catch (ConnectionException e) {
+
+			logger.debug("unable to disconnect " + hint + " wagon.", e);
+		}
+
+		if (wagon == delegate) {
+
+			synchronized (this) {
+
+				delegateInUse = false;
+			}
+
+			return;
+		}
+
+		releaseToContainer(wagon);
+	}
+
+	private void releaseToContainer(Wagon wagon) {
+
+		try {
+
+			container.release(wagon);
+
+		} catch (ComponentLifecycleException e) {
+
+			logger.debug("unable to release " + hint + " wagon.", e);
+		}
+	}
+
+	/**
+	 * This method returns a wagon that transfers with the current connection. It does not take part in connecting
+	 * and disconnecting: its transfers fail once the connection has been closed, even if the wagon has been connected
+	 * again meanwhile.
+	 *
+	 * @return a wagon pinned to the current connection
+	 * @throws TransferFailedException if the wagon is not connected
+	 */
+	public synchronized Wagon pin() throws TransferFailedException {
+
+		if (current == null) {
+
+			throw new TransferFailedException(hint + " wagon is not connected");
+		}
+
+		return new PinnedWagon(current);
+	}
+
+	@Override
+	public void get(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		Lease lease = acquire();
+
+		try {
+
+			lease.wagon.get(resourceName, destination);
+
+		} finally {
+
+			release(lease);
+		}
+	}
+
+	@Override
+	public boolean getIfNewer(String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		Lease lease = acquire();
+
+		try {
+
+			return lease.wagon.getIfNewer(resourceName, destination, timestamp);
+
+		} finally {
+
+			release(lease);
+		}
+	}
+
+	@Override
+	public boolean resourceExists(String resourceName) throws TransferFailedException, AuthorizationException {
+
+		Lease lease = acquire();
+
+		try {
+
+			return lease.wagon.resourceExists(resourceName);
+
+		} finally {
+
+			release(lease);
+		}
+	}
+
+	@Override
+	public List<String> getFileList(String destinationDirectory) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		Lease lease = acquire();
+
+		try {
+
+			return lease.wagon.getFileList(destinationDirectory);
+
+		} finally {
+
+			release(lease);
+		}
+	}
+
+	@Override
+	public void put(File source, String destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		Lease lease = acquire();
+
+		try {
+
+			lease.wagon.put(source, destination);
+
+		} finally {
+
+			release(lease);
+		}
+	}
+
+	@Override
+	public void putDirectory(File sourceDirectory, String destinationDirectory) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		Lease lease = acquire();
+
+		try {
+
+			lease.wagon.putDirectory(sourceDirectory, destinationDirectory);
+
+		} finally {
+
+			release(lease);
+		}
+	}
+
+	@Override
+	public boolean supportsDirectoryCopy() {
+		return delegate.supportsDirectoryCopy();
+	}
+
+	@Override
+	public synchronized Repository getRepository() {
+
+		if (current != null) {
+
+			return current.connection.repository;
+		}
+
+		return delegate.getRepository();
+	}
+
+	@Override
+	public synchronized AuthenticationInfo getAuthenticationInfo() {
+		return current == null ? null : current.connection.getAuthenticationInfo();
+	}
+
+	@Override
+	public synchronized ProxyInfo getProxyInfo(String protocol, String host) {
+		return current == null ? null : current.connection.getProxyInfo(protocol, host);
+	}
+
+	@Override
+	public void connect(Repository source) throws ConnectionException, AuthenticationException {
+
+		connect(new Connection(source, null, null, null));
+	}
+
+	@Override
+	public void connect(Repository source, ProxyInfo proxyInfo) throws ConnectionException, AuthenticationException {
+
+		connect(new Connection(source, null, proxyInfo, null));
+	}
+
+	@Override
+	public void connect(Repository source, ProxyInfoProvider proxyInfoProvider) throws ConnectionException, AuthenticationException {
+
+		connect(new Connection(source, null, null, proxyInfoProvider));
+	}
+
+	@Override
+	public void connect(Repository source, AuthenticationInfo authenticationInfo) throws ConnectionException, AuthenticationException {
+
+		connect(new Connection(source, authenticationInfo, null, null));
+	}
+
+	@Override
+	public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfo proxyInfo) throws ConnectionException, AuthenticationException {
+
+		connect(new Connection(source, authenticationInfo, proxyInfo, null));
+	}
+
+	@Override
+	public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfoProvider proxyInfoProvider) throws ConnectionException, AuthenticationException {
+
+		connect(new Connection(source, authenticationInfo, null, proxyInfoProvider));
+	}
+
+	private synchronized void connect(Connection connection) throws ConnectionException, AuthenticationException {
+
+		Generation generation = generations.get(connection.key());
+
+		if (generation == null) {
+
+			generation = open(connection);
+			generations.put(connection.key(), generation);
+
+		} else {
+
+			generation.references++;
+		}
+
+		connects.addLast(generation);
+		current = generation;
+	}
+
+	private Generation open(Connection connection) throws ConnectionException, AuthenticationException {
+
+		Wagon first = delegateInUse ? null : delegate;
+
+		if (first == null) {
+
+			try {
+
+				first = container.lookup(Wagon.class, hint);
+
+			} catch (ComponentLookupException e) {
+
+				throw new ConnectionException("unable to create an additional " + hint + " wagon: " + e.getMessage(), e);
+			}
+		}
+
+		connection.connect(first);
+
+		Generation generation = new Generation(connection);
+
+		generation.wagons.add(first);
+		generation.idleWagons.push(first);
+		delegateInUse |= first == delegate;
+
+		logger.debug("connected " + hint + " wagon to " + connection.repository.getUrl() + ". " + generations.size()
+				+ " other connections are open.");
+
+		return generation;
+	}
+
+	@Override
+	public void openConnection() throws ConnectionException, AuthenticationException {
+		delegate.openConnection();
+	}
+
+	@Override
+	public synchronized void disconnect() throws ConnectionException {
+
+		Generation generation = connects.pollFirst();
+
+		if (generation == null) {
+
+			logger.debug(hint + " wagon is not connected. Nothing to be done.");
+			return;
+		}
+
+		generation.references--;
+
+		if (generation.references > 0) {
+
+			return;
+		}
+
+		generations.remove(generation.connection.key());
+
+		if (current == generation) {
+
+			current = connects.peekLast();
+		}
+
+		close(generation);
+	}
+
+	/**
+	 * This method closes the given connection. It waits for the running transfers to end and disconnects all of its
+	 * wagons. If the waiting thread gets interrupted, the wagons still in use are disconnected when they are
+	 * released.
+	 */
+	private synchronized void close(Generation generation) {
+
+		generation.closed = true;
+
+		boolean interrupted = false;
+
+		while (!generation.checkedOut.isEmpty() || generation.pending > 0) {
+
+			try {
+
+				wait();
+
+			} catch (InterruptedException e) {
+
+				interrupted = true;
+				break;
+			}
+		}
+
+		generation.disposed = true;
+
+		for (Wagon wagon : generation.wagons) {
+
+			if (!generation.checkedOut.contains(wagon)) {
+
+				dispose(wagon);
+			}
+		}
+
+		generation.idleWagons.clear();
+
+		if (interrupted) {
+
+			logger.debug("interrupted while closing the connection to " + generation.connection.repository.getUrl()
+					+ ". " + generation.checkedOut.size() + " wagons are disconnected when their transfers end.");
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized List<Wagon> wagons() {
+
+		List<Wagon> result = new ArrayList<>();
+
+		result.add(delegate);
+
+		for (Generation generation : generations.values()) {
+
+			for (Wagon wagon : generation.wagons) {
+
+				if (wagon != delegate) {
+
+					result.add(wagon);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public void setTimeout(int timeoutValue) {
+
+		for (Wagon wagon : wagons()) {
+
+			wagon.setTimeout(timeoutValue);
+		}
+	}
+
+	@Override
+	public int getTimeout() {
+		return delegate.getTimeout();
+	}
+
+	@Override
+	public void setReadTimeout(int timeoutValue) {
+
+		for (Wagon wagon : wagons()) {
+
+			wagon.setReadTimeout(timeoutValue);
+		}
+	}
+
+	@Override
+	public int getReadTimeout() {
+		return delegate.getReadTimeout();
+	}
+
+	@Override
+	public void addSessionListener(SessionListener listener) {
+		delegate.addSessionListener(listener);
+	}
+
+	@Override
+	public void removeSessionListener(SessionListener listener) {
+		delegate.removeSessionListener(listener);
+	}
+
+	@Override
+	public boolean hasSessionListener(SessionListener listener) {
+		return delegate.hasSessionListener(listener);
+	}
+
+	@Override
+	public void addTransferListener(TransferListener listener) {
+
+		transferListeners.add(listener);
+
+		for (Wagon wagon : wagons()) {
+
+			wagon.addTransferListener(listener);
+		}
+	}
+
+	@Override
+	public void removeTransferListener(TransferListener listener) {
+
+		transferListeners.remove(listener);
+
+		for (Wagon wagon : wagons()) {
+
+			wagon.removeTransferListener(listener);
+		}
+	}
+
+	@Override
+	public boolean hasTransferListener(TransferListener listener) {
+		return transferListeners.contains(listener);
+	}
+
+	@Override
+	public boolean isInteractive() {
+		return delegate.isInteractive();
+	}
+
+	@Override
+	public void setInteractive(boolean interactive) {
+
+		for (Wagon wagon : wagons()) {
+
+			wagon.setInteractive(interactive);
+		}
+	}
+
+	/**
+	 * This class transfers with the wagons of one connection. Everything but the transfers is answered by the pooled
+	 * wagon.
+	 */
+	private final class PinnedWagon implements Wagon, WagonConnection {
+
+		private final Generation generation;
+
+		private PinnedWagon(Generation generation) {
+			this.generation = generation;
+		}
+
+		@Override
+		public void get(String resourceName, File destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+			Lease lease = acquire(generation);
+
+			try {
+
+				lease.wagon.get(resourceName, destination);
+
+			} finally {
+
+				release(lease);
+			}
+		}
+
+		@Override
+		public boolean getIfNewer(String resourceName, File destination, long timestamp) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+			Lease lease = acquire(generation);
+
+			try {
+
+				return lease.wagon.getIfNewer(resourceName, destination, timestamp);
+
+			} finally {
+
+				release(lease);
+			}
+		}
+
+		@Override
+		public boolean resourceExists(String resourceName) throws TransferFailedException, AuthorizationException {
+
+			Lease lease = acquire(generation);
+
+			try {
+
+				return lease.wagon.resourceExists(resourceName);
+
+			} finally {
+
+				release(lease);
+			}
+		}
+
+		@Override
+		public List<String> getFileList(String destinationDirectory) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+			Lease lease = acquire(generation);
+
+			try {
+
+				return lease.wagon.getFileList(destinationDirectory);
+
+			} finally {
+
+				release(lease);
+			}
+		}
+
+		@Override
+		public void put(File source, String destination) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+			Lease lease = acquire(generation);
+
+			try {
+
+				lease.wagon.put(source, destination);
+
+			} finally {
+
+				release(lease);
+			}
+		}
+
+		@Override
+		public void putDirectory(File sourceDirectory, String destinationDirectory) throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+			Lease lease = acquire(generation);
+
+			try {
+
+				lease.wagon.putDirectory(sourceDirectory, destinationDirectory);
+
+			} finally {
+
+				release(lease);
+			}
+		}
+
+		@Override
+		public boolean supportsDirectoryCopy() {
+			return PooledDelegateWagon.this.supportsDirectoryCopy();
+		}
+
+		@Override
+		public Repository getRepository() {
+			return generation.connection.repository;
+		}
+
+		@Override
+		public AuthenticationInfo getAuthenticationInfo() {
+			return generation.connection.getAuthenticationInfo();
+		}
+
+		@Override
+		public ProxyInfo getProxyInfo(String protocol, String host) {
+			return generation.connection.getProxyInfo(protocol, host);
+		}
+
+		@Override
+		public void connect(Repository source) throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void connect(Repository source, ProxyInfo proxyInfo) throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void connect(Repository source, ProxyInfoProvider proxyInfoProvider) throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void connect(Repository source, AuthenticationInfo authenticationInfo) throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfo proxyInfo) throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void connect(Repository source, AuthenticationInfo authenticationInfo, ProxyInfoProvider proxyInfoProvider) throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void openConnection() throws ConnectionException {
+			throw new ConnectionException("a pinned wagon cannot be connected");
+		}
+
+		@Override
+		public void disconnect() {
+			// the connection is closed by the pooled wagon.
+		}
+
+		@Override
+		public void setTimeout(int timeoutValue) {
+			PooledDelegateWagon.this.setTimeout(timeoutValue);
+		}
+
+		@Override
+		public int getTimeout() {
+			return PooledDelegateWagon.this.getTimeout();
+		}
+
+		@Override
+		public void setReadTimeout(int timeoutValue) {
+			PooledDelegateWagon.this.setReadTimeout(timeoutValue);
+		}
+
+		@Override
+		public int getReadTimeout() {
+			return PooledDelegateWagon.this.getReadTimeout();
+		}
+
+		@Override
+		public void addSessionListener(SessionListener listener) {
+			PooledDelegateWagon.this.addSessionListener(listener);
+		}
+
+		@Override
+		public void removeSessionListener(SessionListener listener) {
+			PooledDelegateWagon.this.removeSessionListener(listener);
+		}
+
+		@Override
+		public boolean hasSessionListener(SessionListener listener) {
+			return PooledDelegateWagon.this.hasSessionListener(listener);
+		}
+
+		@Override
+		public void addTransferListener(TransferListener listener) {
+			PooledDelegateWagon.this.addTransferListener(listener);
+		}
+
+		@Override
+		public void removeTransferListener(TransferListener listener) {
+			PooledDelegateWagon.this.removeTransferListener(listener);
+		}
+
+		@Override
+		public boolean hasTransferListener(TransferListener listener) {
+			return PooledDelegateWagon.this.hasTransferListener(listener);
+		}
+
+		@Override
+		public boolean isInteractive() {
+			return PooledDelegateWagon.this.isInteractive();
+		}
+
+		@Override
+		public void setInteractive(boolean interactive) {
+			PooledDelegateWagon.this.setInteractive(interactive);
+		}
+	}
+
+	/**
+	 * This class holds the wagons of one connection. All of its fields are guarded by the pooled wagon.
+	 */
+	private static final class Generation {
+
+		private final Connection connection;
+
+		private final List<Wagon> wagons = new ArrayList<>();
+		private final Deque<Wagon> idleWagons = new ArrayDeque<>();
+		private final Set<Wagon> checkedOut = Collections.newSetFromMap(new IdentityHashMap<Wagon, Boolean>());
+
+		private int references = 1;
+		private int pending;
+		private boolean exhausted;
+		private boolean closed;
+		private boolean disposed;
+
+		private Generation(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+	/**
+	 * This class holds a wagon handed out for a transfer and the connection it belongs to.
+	 */
+	private static final class Lease {
+
+		private final Generation generation;
+		private final Wagon wagon;
+
+		private Lease(Generation generation, Wagon wagon) {
+			this.generation = generation;
+			this.wagon = wagon;
+		}
+	}
+
+	/**
+	 * This class holds the repository and the arguments the wagon was connected with, to connect additional wagons the
+	 * same way.
+	 */
+	private static final class Connection extends ConnectionArguments {
+
+		private final Repository repository;
+
+		private Connection(Repository repository, AuthenticationInfo authenticationInfo, ProxyInfo proxyInfo, ProxyInfoProvider proxyInfoProvider) {
+			super(authenticationInfo, proxyInfo, proxyInfoProvider);
+			this.repository = repository;
+		}
+
+		private String key() {
+			return repository.getId() + " " + repository.getUrl();
+		}
+
+		private void connect(Wagon wagon) throws ConnectionException, AuthenticationException {
+			connect(wagon, repository);
+		}
+	}
+}
@@ -0,0 +1,469 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.miracelwhipp.net.common.LockTable;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.maven.wagon.Wagon;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This component provides the dependency metadata of nuget packages from the registration resource of a v3 feed.
+ * The registration index of a package lists the dependency groups of all its versions in a few pages, so a single
+ * request yields the metadata of every version. For each version a minimal nuspec file is stored in the local
+ * repository, from which poms are created just like from downloaded nuspec files.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = RegistrationCache.class, instantiationStrategy = "singleton")
+public class RegistrationCache {
+
+	public static final String REGISTRATION_DIRECTORY = "registration";
+
+	private static final String NUSPEC_NAMESPACE = "http://schemas.microsoft.com/packaging/2013/05/nuspec.xsd";
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	@Requirement
+	private NugetHttpClients httpClients;
+
+	private final LockTable locks = new LockTable();
+
+	private final Set<String> loadedPackages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final Set<String> failedRegistrations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * This method returns a nuspec file holding the dependencies of the given package version. The registration index
+	 * of the package is downloaded at most once per session, with the credentials and the proxy of the given wagon.
+	 *
+	 * @param delegate             the wagon connected to the repository
+	 * @param registrationsBaseUrl the url of the registration resource of the feed
+	 * @param artifact             the package
+	 * @return the nuspec file or null if the registration does not provide the version
+	 */
+	public File getSpecification(Wagon delegate, String registrationsBaseUrl, NugetArtifact artifact) {
+
+		String id = artifact.getGroupId().toLowerCase(Locale.ENGLISH);
+
+		File packageDirectory = new File(new File(new File(configuration.getCacheDirectory(), REGISTRATION_DIRECTORY),
+				NugetWagonConfiguration.cacheName(registrationsBaseUrl)), id);
+
+		File result = new File(packageDirectory, artifact.getVersion().toLowerCase(Locale.ENGLISH) + NugetArtifact.EXTENSION_SPECIFICATION);
+
+		if (result.exists()) {
+
+			return result;
+		}
+
+		String key = packageDirectory.getAbsolutePath();
+
+		try (LockTable.Lock ignored = locks.lock(key)) {
+
+			if (!result.exists() && loadedPackages.add(key)) {
+
+				load(delegate, PackageIndexCache.resourceUrl(registrationsBaseUrl, id + "/index.json"), packageDirectory);
+			}
+
+		} catch (IOException | XMLStreamException e) {
+
+			if (failedRegistrations.add(registrationsBaseUrl)) {
+
+				logger.warn("unable to read registration " + registrationsBaseUrl + ": " + e.getMessage() + ". falling back to nuspec.");
+			}
+
+			logger.debug("unable to read registration of " + id + ". falling back to nuspec.", e);
+			return null;
+		}
+
+		return result.exists() ? result : null;
+	}
+
+	private void load(Wagon delegate, String url, File packageDirectory) throws IOException, XMLStreamException {
+
+		List<String> pageUrls = new ArrayList<>();
+		List<Entry> entries = new ArrayList<>();
+
+		logger.debug("downloading registration index " + url);
+
+		try (InputStream source = open(delegate, url); JsonParser parser = JSON_FACTORY.createParser(source)) {
+
+			readIndex(parser, pageUrls, entries);
+		}
+
+		for (String pageUrl : pageUrls) {
+
+			logger.debug("downloading registration page " + pageUrl);
+
+			try (InputStream source = open(delegate, pageUrl); JsonParser parser = JSON_FACTORY.createParser(source)) {
+
+				readPage(parser, entries);
+			}
+		}
+
+		FileUtils.forceMkdir(packageDirectory);
+
+		for (Entry entry : entries) {
+
+			File file = new File(packageDirectory, entry.version.toLowerCase(Locale.ENGLISH) + NugetArtifact.EXTENSION_SPECIFICATION);
+
+			if (!file.exists()) {
+
+				writeSpecification(entry, file);
+			}
+		}
+
+		logger.debug("registration provided " + entries.size() + " versions in " + (pageUrls.size() + 1) + " requests.");
+	}
+
+	private InputStream open(Wagon delegate, String url) throws IOException {
+
+		CloseableHttpResponse response = httpClients.execute(delegate, new HttpGet(url));
+
+		if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || response.getEntity() == null) {
+
+			response.close();
+			throw new IOException("unexpected status " + response.getStatusLine() + " for " + url);
+		}
+
+		// closing the content releases the connection.
+		return response.getEntity().getContent();
+	}
+
+	/**
+	 * This method reads a registration index. Pages containing their leaves are read directly, the urls of all
+	 * other pages are collected.
+	 */
+	private static void readIndex(JsonParser parser, List<String> pageUrls, List<Entry> entries) throws IOException {
+
+		expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if (!"items".equals(name) || value != JsonToken.START_ARRAY) {
+
+				parser.skipChildren();
+				continue;
+			}
+
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+
+				String pageUrl = readPageObject(parser, entries);
+
+				if (pageUrl != null) {
+
+					pageUrls.add(pageUrl);
+				}
+			}
+		}
+	}
+
+	private static void readPage(JsonParser parser, List<Entry> entries) throws IOException {
+
+		expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+		readPageObject(parser, entries);
+	}
+
+	/**
+	 * This method reads a page object.
+	 *
+	 * @return the url of the page if its leaves are not contained
+	 */
+	private static String readPageObject(JsonParser parser, List<Entry> entries) throws IOException {
+
+		String url = null;
+		boolean containsItems = false;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if ("@id".equals(name) && value == JsonToken.VALUE_STRING) {
+
+				url = parser.getText();
+
+			} else if ("items".equals(name) && value == JsonToken.START_ARRAY) {
+
+				containsItems = true;
+
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+
+					readLeaf(parser, entries);
+				}
+
+			} else {
+
+				parser.skipChildren();
+			}
+		}
+
+		return containsItems ? null : url;
+	}
+
+	private static void readLeaf(JsonParser parser, List<Entry> entries) throws IOException {
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if ("catalogEntry".equals(name) && value == JsonToken.START_OBJECT) {
+
+				Entry entry = readCatalogEntry(parser);
+
+				if (entry.id != null && entry.version != null) {
+
+					entries.add(entry);
+				}
+
+			} else {
+
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private static Entry readCatalogEntry(JsonParser parser) throws IOException {
+
+		Entry result = new Entry();
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if ("id".equals(name) && value == JsonToken.VALUE_STRING) {
+
+				result.id = parser.getText();
+
+			} else if ("version".equals(name) && value == JsonToken.VALUE_STRING) {
+
+				result.version = parser.getText();
+
+			} else if ("dependencyGroups".equals(name) && value == JsonToken.START_ARRAY) {
+
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+
+					result.groups.add(readGroup(parser));
+				}
+
+			} else {
+
+				parser.skipChildren();
+			}
+		}
+
+		return result;
+	}
+
+	private static Group readGroup(JsonParser parser) throws IOException {
+
+		Group result = new Group();
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if ("targetFramework".equals(name) && value == JsonToken.VALUE_STRING) {
+
+				result.targetFramework = parser.getText();
+
+			} else if ("dependencies".equals(name) && value == JsonToken.START_ARRAY) {
+
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+
+					Dependency dependency = readDependency(parser);
+
+					if (dependency.id != null) {
+
+						result.dependencies.add(dependency);
+					}
+				}
+
+			} else {
+
+				parser.skipChildren();
+			}
+		}
+
+		return result;
+	}
+
+	private static Dependency readDependency(JsonParser parser) throws IOException {
+
+		Dependency result = new Dependency();
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if ("id".equals(name) && value == JsonToken.VALUE_STRING) {
+
+				result.id = parser.getText();
+
+			} else if ("range".equals(name) && value == JsonToken.VALUE_STRING) {
+
+				result.range = parser.getText();
+
+			} else {
+
+				parser.skipChildren();
+			}
+		}
+
+		return result;
+	}
+
+	private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+
+		if (actual != expected) {
+
+			throw new IOException("unexpected token " + actual + " in registration. expected " + expected);
+		}
+	}
+
+	private static void writeSpecification(Entry entry, File file) throws IOException, XMLStreamException {
+
+		File tempFile = new File(file.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+		try {
+
+			try (OutputStream target = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+
+				XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(target, "UTF-8");
+
+				writer.writeStartDocument("UTF-8", "1.0");
+				writer.setDefaultNamespace(NUSPEC_NAMESPACE);
+				writer.writeStartElement(NUSPEC_NAMESPACE, "package");
+				writer.writeDefaultNamespace(NUSPEC_NAMESPACE);
+				writer.writeStartElement(NUSPEC_NAMESPACE, "metadata");
+
+				writer.writeStartElement(NUSPEC_NAMESPACE, "id");
+				writer.writeCharacters(entry.id);
+				writer.writeEndElement();
+
+				writer.writeStartElement(NUSPEC_NAMESPACE, "version");
+				writer.writeCharacters(entry.version);
+				writer.writeEndElement();
+
+				writer.writeStartElement(NUSPEC_NAMESPACE, "dependencies");
+
+				for (Group group : entry.groups) {
+
+					writer.writeStartElement(NUSPEC_NAMESPACE, "group");
+
+					if (group.targetFramework != null) {
+
+						writer.writeAttribute("targetFramework", group.targetFramework);
+					}
+
+					for (Dependency dependency : group.dependencies) {
+
+						writer.writeEmptyElement(NUSPEC_NAMESPACE, "dependency");
+						writer.writeAttribute("id", dependency.id);
+						writer.writeAttribute("version", nuspecVersion(dependency.range));
+					}
+
+					writer.writeEndElement();
+				}
+
+				writer.writeEndElement();
+				writer.writeEndElement();
+				writer.writeEndElement();
+				writer.writeEndDocument();
+				writer.close();
+			}
+
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	/**
+	 * This method converts a version range of the registration to the version a nuspec file would state. The
+	 * registration normalizes a minimal version like 4.3.0 to the range [4.3.0, ), which maven would interpret as a
+	 * hard requirement.
+	 */
+	static String nuspecVersion(String range) {
+
+		if (range == null) {
+
+			return "";
+		}
+
+		String trimmed = range.trim();
+
+		if (trimmed.startsWith("[") && trimmed.endsWith(", )")) {
+
+			return trimmed.substring(1, trimmed.length() - 3).trim();
+		}
+
+		if (trimmed.startsWith("[") && trimmed.endsWith(",)")) {
+
+			return trimmed.substring(1, trimmed.length() - 2).trim();
+		}
+
+		return trimmed;
+	}
+
+	private static final class Entry {
+
+		private String id;
+		private String version;
+		private final List<Group> groups = new ArrayList<>();
+	}
+
+	private static final class Group {
+
+		private String targetFramework;
+		private final List<Dependency> dependencies = new ArrayList<>();
+	}
+
+	private static final class Dependency {
+
+		private String id;
+		private String range;
+	}
+}
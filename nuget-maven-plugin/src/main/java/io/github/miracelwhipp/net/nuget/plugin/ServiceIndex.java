@@ -0,0 +1,161 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the resources a nuget v3 feed announces in its service index (.../v3/index.json), mapped from
+ * their type to their url.
+ *
+ * @author miracelwhipp
+ */
+public final class ServiceIndex {
+
+	public static final String TYPE_PACKAGE_BASE_ADDRESS = "PackageBaseAddress/3.0.0";
+	public static final String TYPE_REGISTRATIONS_BASE_URL = "RegistrationsBaseUrl";
+
+	/**
+	 * The versions of the registration resource, most preferred first. Versions 3.6.0 and 3.4.0 are gzip compressed,
+	 * 3.6.0 also lists SemVer 2.0.0 packages.
+	 */
+	private static final String[] REGISTRATIONS_BASE_URL_VERSIONS = {"/3.6.0", "/3.4.0", "/3.0.0-rc", "/3.0.0-beta", ""};
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final String url;
+	private final Map<String, String> resources;
+
+	private ServiceIndex(String url, Map<String, String> resources) {
+		this.url = url;
+		this.resources = Collections.unmodifiableMap(resources);
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public Map<String, String> getResources() {
+		return resources;
+	}
+
+	public String getResource(String type) {
+		return resources.get(type);
+	}
+
+	/**
+	 * This method returns the base url of the flat container the packages are downloaded from.
+	 *
+	 * @return the url or null if the feed does not announce one
+	 */
+	public String getPackageBaseAddress() {
+		return getResource(TYPE_PACKAGE_BASE_ADDRESS);
+	}
+
+	/**
+	 * This method returns the base url of the registration resource holding the metadata of the packages.
+	 *
+	 * @return the url of the most recent version of the resource or null if the feed does not announce one
+	 */
+	public String getRegistrationsBaseUrl() {
+
+		for (String version : REGISTRATIONS_BASE_URL_VERSIONS) {
+
+			String result = getResource(TYPE_REGISTRATIONS_BASE_URL + version);
+
+			if (result != null) {
+
+				return result;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * This method reads a service index.
+	 *
+	 * @param url  the url the service index was downloaded from
+	 * @param file the downloaded service index
+	 * @return the service index
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public static ServiceIndex read(String url, File file) throws IOException {
+
+		Map<String, String> resources = new LinkedHashMap<>();
+
+		try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+
+				throw new JsonParseException(parser, "service index does not contain an object");
+			}
+
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+
+				if (!"resources".equals(name) || value != JsonToken.START_ARRAY) {
+
+					parser.skipChildren();
+					continue;
+				}
+
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+
+					readResource(parser, resources);
+				}
+			}
+		}
+
+		return new ServiceIndex(url, resources);
+	}
+
+	private static void readResource(JsonParser parser, Map<String, String> resources) throws IOException {
+
+		String id = null;
+		String type = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+
+			if (value != JsonToken.VALUE_STRING) {
+
+				parser.skipChildren();
+				continue;
+			}
+
+			if ("@id".equals(name)) {
+
+				id = parser.getText();
+
+			} else if ("@type".equals(name)) {
+
+				type = parser.getText();
+			}
+		}
+
+		if (id != null && type != null && !resources.containsKey(type)) {
+
+			resources.put(type, id);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceIndex{" +
+				"url='" + url + '\'' +
+				", resources=" + resources +
+				'}';
+	}
+}
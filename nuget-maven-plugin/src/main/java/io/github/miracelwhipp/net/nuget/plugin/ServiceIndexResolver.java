@@ -0,0 +1,193 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpStatus;
+import io.github.miracelwhipp.net.common.LockTable;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This component resolves the service index of nuget v3 feeds. Service indices are downloaded once per session and
+ * additionally kept in the local repository for the configured time to live.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = ServiceIndexResolver.class, instantiationStrategy = "singleton")
+public class ServiceIndexResolver {
+
+	public static final String SERVICE_INDEX_DIRECTORY = "service-index";
+	public static final String SERVICE_INDEX_FILE = "index.json";
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	@Requirement
+	private NugetHttpClients httpClients;
+
+	private final ConcurrentMap<String, ServiceIndex> serviceIndices = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, ServiceIndex> serviceIndicesByPackageBaseAddress = new ConcurrentHashMap<>();
+
+	private final LockTable locks = new LockTable();
+
+	/**
+	 * This method determines whether the given url points to a service index rather than to a flat container.
+	 *
+	 * @param url the url of a repository
+	 * @return true if the url denotes a service index
+	 */
+	public static boolean isServiceIndex(String url) {
+
+		return url.endsWith("/" + SERVICE_INDEX_FILE);
+	}
+
+	/**
+	 * This method returns the service index the given repository points to. Service indices of different feeds are
+	 * resolved concurrently.
+	 *
+	 * @param repository the repository whose url is the service index
+	 * @param connection the arguments the wagon is connected to the repository with
+	 * @return the service index
+	 * @throws ConnectionException if the service index can be neither downloaded nor found in the cache
+	 */
+	public ServiceIndex resolve(Repository repository, WagonConnection connection) throws ConnectionException {
+
+		String url = repository.getUrl();
+
+		ServiceIndex result = serviceIndices.get(url);
+
+		if (result != null) {
+
+			return result;
+		}
+
+		try (LockTable.Lock ignored = locks.lock(url)) {
+
+			result = serviceIndices.get(url);
+
+			if (result != null) {
+
+				return result;
+			}
+
+			result = load(repository, connection);
+
+			logger.debug("resolved " + result);
+
+			serviceIndices.put(url, result);
+
+			if (result.getPackageBaseAddress() != null) {
+
+				serviceIndicesByPackageBaseAddress.put(result.getPackageBaseAddress(), result);
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * This method returns the service index a flat container url was resolved from.
+	 *
+	 * @param packageBaseAddress the url of the flat container
+	 * @return the service index or null if the url was not resolved from a service index
+	 */
+	public ServiceIndex forPackageBaseAddress(String packageBaseAddress) {
+
+		return serviceIndicesByPackageBaseAddress.get(packageBaseAddress);
+	}
+
+	private ServiceIndex load(Repository repository, WagonConnection connection) throws ConnectionException {
+
+		String url = repository.getUrl();
+
+		File cacheFile = new File(new File(new File(configuration.getCacheDirectory(), SERVICE_INDEX_DIRECTORY),
+				NugetWagonConfiguration.cacheName(url)), SERVICE_INDEX_FILE);
+
+		if (cacheFile.exists() && System.currentTimeMillis() - cacheFile.lastModified() < configuration.getServiceIndexTimeToLive()) {
+
+			try {
+
+				return ServiceIndex.read(url, cacheFile);
+
+			} catch (IOException e) {
+
+				logger.debug("cached service index " + cacheFile.getAbsolutePath() + " is unreadable. downloading.", e);
+			}
+		}
+
+		try {
+
+			download(repository, connection, cacheFile);
+
+			return ServiceIndex.read(url, cacheFile);
+
+		} catch (IOException e) {
+
+			if (!cacheFile.exists()) {
+
+				throw new ConnectionException("unable to download service index " + url + ": " + e.getMessage(), e);
+			}
+
+			logger.warn("unable to download service index " + url + ". using outdated copy " + cacheFile.getAbsolutePath());
+
+			try {
+
+				return ServiceIndex.read(url, cacheFile);
+
+			} catch (IOException readFailure) {
+
+				throw new ConnectionException("unable to read service index " + cacheFile.getAbsolutePath(), readFailure);
+			}
+		}
+	}
+
+	private void download(Repository repository, WagonConnection connection, File destination) throws IOException {
+
+		String url = repository.getUrl();
+
+		logger.debug("downloading service index " + url);
+
+		FileUtils.forceMkdir(destination.getParentFile());
+
+		File tempFile = new File(destination.getAbsolutePath() + ".tmp" + UUID.randomUUID().toString());
+
+		try (CloseableHttpResponse response = httpClients.execute(repository, connection, new HttpGet(url))) {
+
+			int status = response.getStatusLine().getStatusCode();
+
+			if (status != HttpStatus.SC_OK || response.getEntity() == null) {
+
+				throw new IOException("unexpected status " + response.getStatusLine());
+			}
+
+			try (OutputStream target = new FileOutputStream(tempFile)) {
+
+				response.getEntity().writeTo(target);
+			}
+
+			Files.move(tempFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * This class represents a download that is currently running. The thread that started the download is the leader,
+ * all other threads requesting the same resource join the transfer and wait for its result. The downloaded file is
+ * staged until the last participant has taken it over.
+ *
+ * @author miracelwhipp
+ */
+class SharedTransfer {
+
+	private final File stagingFile;
+
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private int participants = 1;
+	private boolean open = true;
+
+	private volatile File result;
+	private volatile Exception failure;
+
+	SharedTransfer(File stagingFile) {
+		this.stagingFile = stagingFile;
+	}
+
+	File getStagingFile() {
+		return stagingFile;
+	}
+
+	/**
+	 * This method adds a participant to the transfer.
+	 *
+	 * @return false if the transfer does not accept participants anymore
+	 */
+	synchronized boolean join() {
+
+		if (!open) {
+
+			return false;
+		}
+
+		participants++;
+
+		return true;
+	}
+
+	/**
+	 * This method prevents further participants from joining. It is called by the leader before the transfer is
+	 * removed from the registry of running transfers.
+	 */
+	synchronized void close() {
+
+		open = false;
+	}
+
+	/**
+	 * This method finishes the transfer successfully.
+	 *
+	 * @param result the file holding the downloaded content. This is either the staging file or a file that
+	 *               already provided the content.
+	 */
+	void succeed(File result) {
+
+		this.result = result;
+		done.countDown();
+	}
+
+	void fail(Exception exception) {
+
+		failure = exception;
+		done.countDown();
+	}
+
+	/**
+	 * This method waits for the transfer to finish.
+	 *
+	 * @return the file holding the downloaded content
+	 */
+	File await() throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+
+		try {
+
+			done.await();
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new TransferFailedException("interrupted while waiting for download of " + stagingFile.getName(), e);
+		}
+
+		Exception exception = failure;
+
+		if (exception == null) {
+
+			return result;
+		}
+
+		if (exception instanceof ResourceDoesNotExistException) {
+
+			throw new ResourceDoesNotExistException(exception.getMessage(), exception);
+		}
+
+		if (exception instanceof AuthorizationException) {
+
+			throw new AuthorizationException(exception.getMessage(), exception);
+		}
+
+		throw new TransferFailedException(exception.getMessage(), exception);
+	}
+
+	/**
+	 * This method checks whether the calling participant is the only one left. Since the transfer does not accept
+	 * new participants once it is finished, the caller may then move the staging file instead of copying it.
+	 *
+	 * @return true if the caller is the last participant
+	 */
+	synchronized boolean isLastParticipant() {
+
+		return participants == 1;
+	}
+
+	/**
+	 * This method removes a participant from the transfer.
+	 *
+	 * @return true if the staged file is not used anymore
+	 */
+	synchronized boolean leave() {
+
+		participants--;
+
+		return participants == 0;
+	}
+}
@@ -0,0 +1,27 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.proxy.ProxyInfo;
+
+/**
+ * This interface gives access to the arguments a wagon was connected with, so requests sent past the wagon can
+ * authenticate and use a proxy just like the wagon does.
+ *
+ * @author miracelwhipp
+ */
+public interface WagonConnection {
+
+	/**
+	 * @return the credentials the wagon was connected with or null
+	 */
+	AuthenticationInfo getAuthenticationInfo();
+
+	/**
+	 * This method returns the proxy to use for the given host.
+	 *
+	 * @param protocol the protocol of the request, e.g. https
+	 * @param host     the host to send the request to
+	 * @return the proxy or null if the host is to be reached directly
+	 */
+	ProxyInfo getProxyInfo(String protocol, String host);
+}
@@ -0,0 +1,498 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This component measures where the wagon spends its time. It keeps a timer with a histogram of durations per
+ * {@link Phase}, the bytes each phase handled and hit and miss counters per {@link Cache}. When the session ends, the
+ * numbers are logged and written to {@link #JSON_FILE} and {@link #TEXT_FILE}. Besides, every measured phase can be
+ * recorded as a span of a {@link WagonTrace}, written to {@link #TRACE_FILE}.
+ * <p>
+ * The statistics are only collected if enabled with {@link NugetWagonConfiguration#PROPERTY_STATISTICS}, the trace if
+ * enabled with {@link NugetWagonConfiguration#PROPERTY_TRACE}. Otherwise {@link #start()} returns 0 and every other
+ * method returns immediately.
+ *
+ * @author miracelwhipp
+ */
+@Component(role = WagonStatistics.class, instantiationStrategy = "singleton")
+public class WagonStatistics implements Disposable {
+
+	public static final String JSON_FILE = "nuget-wagon-statistics.json";
+	public static final String TEXT_FILE = "nuget-wagon-statistics.txt";
+	public static final String TRACE_FILE = "nuget-wagon-trace.json";
+
+	/**
+	 * The upper bounds of the histogram buckets in milliseconds. The last bucket takes all longer durations.
+	 */
+	private static final long[] BUCKET_BOUNDS = {1, 10, 100, 1000, 10000};
+
+	/**
+	 * This enum lists the measured phases of the wagon. Phases of the kind wait measure how long a thread waited for
+	 * another one.
+	 */
+	public enum Phase {
+
+		RESOURCE("resource", "a request of maven to the wagon, from start to end"),
+		DOWNLOAD("download", "a download of the delegate wagon, including verification"),
+		UNPACK("unpack", "extracting a file from a package"),
+		SELECT_LIBRARY("select library", "reading the package index and choosing the library for the target framework"),
+		LINK("link", "linking or copying an extracted file to the local repository"),
+		SELECT_DEPENDENCY_GROUP("select dependency group", "choosing the dependency group of a nuspec for the target framework"),
+		POM("pom", "converting a nuspec to a pom"),
+		METADATA("metadata", "converting a version list to maven metadata"),
+		CHECKSUM("checksum", "providing a checksum"),
+		DOWNLOAD_LOCK_WAIT("download lock wait", "waiting for the lock of a package to download"),
+		TRANSFER_WAIT("transfer wait", "waiting for a download started by another thread"),
+		PACKAGE_LOCK_WAIT("package lock wait", "waiting for the lock of a package to unpack or transform"),
+		PROCESS_LOCK_WAIT("process lock wait", "waiting for the file lock of a package held by another process");
+
+		private final String displayName;
+		private final String description;
+
+		Phase(String displayName, String description) {
+			this.displayName = displayName;
+			this.description = description;
+		}
+
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	/**
+	 * This enum lists the caches whose hits and misses are counted.
+	 */
+	public enum Cache {
+
+		PACKAGE("package", "packages and nuspec files to download found in the local repository"),
+		SHARED_TRANSFER("shared transfer", "downloads joined instead of started"),
+		NUGET_FILE("nuget file", "nuspec and nupkg files requested by maven found in the local repository"),
+		CHECKSUM("checksum", "checksums provided without asking the repository");
+
+		private final String displayName;
+		private final String description;
+
+		Cache(String displayName, String description) {
+			this.displayName = displayName;
+			this.description = description;
+		}
+
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	/**
+	 * This class holds the numbers of a phase.
+	 */
+	private static final class Timer {
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final AtomicLong maximum = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+		private void add(long duration, long byteCount) {
+
+			count.increment();
+			nanos.add(duration);
+
+			if (byteCount > 0) {
+
+				bytes.add(byteCount);
+			}
+
+			long current = maximum.get();
+
+			while (duration > current && !maximum.compareAndSet(current, duration)) {
+
+				current = maximum.get();
+			}
+
+			histogram.incrementAndGet(bucket(duration));
+		}
+
+		private static int bucket(long duration) {
+
+			long millis = TimeUnit.NANOSECONDS.toMillis(duration);
+
+			for (int index = 0; index < BUCKET_BOUNDS.length; index++) {
+
+				if (millis < BUCKET_BOUNDS[index]) {
+
+					return index;
+				}
+			}
+
+			return BUCKET_BOUNDS.length;
+		}
+	}
+
+	@Requirement
+	private Logger logger;
+
+	@Requirement
+	private NugetWagonConfiguration configuration;
+
+	private final Timer[] timers = new Timer[Phase.values().length];
+	private final LongAdder[] hits = new LongAdder[Cache.values().length];
+	private final LongAdder[] misses = new LongAdder[Cache.values().length];
+
+	private static final int MODE_UNKNOWN = -1;
+	private static final int MODE_STATISTICS = 1;
+	private static final int MODE_TRACE = 2;
+
+	private volatile int mode = MODE_UNKNOWN;
+
+	private long sessionStart;
+
+	private WagonTrace trace;
+
+	public WagonStatistics() {
+
+		for (int index = 0; index < timers.length; index++) {
+
+			timers[index] = new Timer();
+		}
+
+		for (int index = 0; index < hits.length; index++) {
+
+			hits[index] = new LongAdder();
+			misses[index] = new LongAdder();
+		}
+	}
+
+	/**
+	 * This method determines what is collected. The settings are read once per session.
+	 *
+	 * @return a combination of {@link #MODE_STATISTICS} and {@link #MODE_TRACE} or 0 if nothing is collected
+	 */
+	private int getMode() {
+
+		int result = mode;
+
+		if (result == MODE_UNKNOWN) {
+
+			synchronized (this) {
+
+				if (mode == MODE_UNKNOWN) {
+
+					sessionStart = System.nanoTime();
+
+					if (configuration.isTrace()) {
+
+						trace = new WagonTrace(sessionStart);
+					}
+
+					mode = (configuration.isStatistics() ? MODE_STATISTICS : 0) | (trace != null ? MODE_TRACE : 0);
+				}
+
+				result = mode;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method determines whether statistics are collected.
+	 *
+	 * @return true if statistics are collected
+	 */
+	public boolean isEnabled() {
+
+		return (getMode() & MODE_STATISTICS) != 0;
+	}
+
+	/**
+	 * This method starts measuring a phase.
+	 *
+	 * @return the start time to pass to {@link #stop(Phase, long, String)} or 0 if neither statistics nor a trace
+	 * are collected
+	 */
+	public long start() {
+
+		if (getMode() == 0) {
+
+			return 0;
+		}
+
+		return System.nanoTime();
+	}
+
+	/**
+	 * This method ends measuring a phase.
+	 *
+	 * @param phase    the phase
+	 * @param start    the value returned by {@link #start()}
+	 * @param artifact the resource, artifact or package the phase concerns. It names the span in the trace.
+	 */
+	public void stop(Phase phase, long start, String artifact) {
+
+		stop(phase, start, artifact, 0);
+	}
+
+	/**
+	 * This method ends measuring a phase that handled the given number of bytes.
+	 *
+	 * @param phase    the phase
+	 * @param start    the value returned by {@link #start()}
+	 * @param artifact the resource, artifact or package the phase concerns
+	 * @param bytes    the number of bytes downloaded, extracted or written
+	 */
+	public void stop(Phase phase, long start, String artifact, long bytes) {
+
+		if (start == 0) {
+
+			return;
+		}
+
+		long end = System.nanoTime();
+		int currentMode = mode;
+
+		if ((currentMode & MODE_STATISTICS) != 0) {
+
+			timers[phase.ordinal()].add(end - start, bytes);
+		}
+
+		if ((currentMode & MODE_TRACE) != 0) {
+
+			trace.add(phase, artifact, start, end, bytes);
+		}
+	}
+
+	/**
+	 * This method ends measuring a phase that handled the given file.
+	 *
+	 * @param phase    the phase
+	 * @param start    the value returned by {@link #start()}
+	 * @param artifact the resource, artifact or package the phase concerns
+	 * @param file     the file downloaded, extracted or written
+	 */
+	public void stop(Phase phase, long start, String artifact, File file) {
+
+		if (start == 0) {
+
+			return;
+		}
+
+		stop(phase, start, artifact, file.length());
+	}
+
+	public void hit(Cache cache) {
+
+		if (isEnabled()) {
+
+			hits[cache.ordinal()].increment();
+		}
+	}
+
+	public void miss(Cache cache) {
+
+		if (isEnabled()) {
+
+			misses[cache.ordinal()].increment();
+		}
+	}
+
+	/**
+	 * This method logs and writes the statistics and writes the trace of the session.
+	 */
+	@Override
+	public synchronized void dispose() {
+
+		int currentMode = mode;
+
+		mode = 0;
+
+		if (currentMode <= 0) {
+
+			return;
+		}
+
+		File directory = configuration.getReportDirectory();
+
+		try {
+
+			FileUtils.forceMkdir(directory);
+
+		} catch (IOException e) {
+
+			logger.warn("unable to create " + directory.getAbsolutePath() + ": " + e.getMessage());
+			return;
+		}
+
+		if ((currentMode & MODE_STATISTICS) != 0) {
+
+			writeStatistics(directory, System.nanoTime() - sessionStart);
+		}
+
+		if ((currentMode & MODE_TRACE) != 0) {
+
+			File traceFile = new File(directory, TRACE_FILE);
+
+			try {
+
+				trace.write(traceFile);
+
+				logger.info("nuget wagon trace written to " + traceFile.getAbsolutePath());
+
+			} catch (IOException e) {
+
+				logger.warn("unable to write nuget wagon trace to " + traceFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void writeStatistics(File directory, long sessionNanos) {
+
+		String text = text(sessionNanos);
+
+		logger.info(text);
+
+		try {
+
+			FileUtils.write(new File(directory, TEXT_FILE), text, StandardCharsets.UTF_8);
+			writeJson(new File(directory, JSON_FILE), sessionNanos);
+
+			logger.info("nuget wagon statistics written to " + new File(directory, JSON_FILE).getAbsolutePath());
+
+		} catch (IOException e) {
+
+			logger.warn("unable to write nuget wagon statistics to " + directory.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	private String text(long sessionNanos) {
+
+		StringBuilder result = new StringBuilder(2048);
+
+		result.append(String.format(Locale.ENGLISH, "nuget wagon statistics - session took %.1f s%n", sessionNanos / 1e9));
+		result.append(String.format(Locale.ENGLISH, "%-20s %8s %12s %10s %10s %12s  %s%n",
+				"phase", "count", "total ms", "mean ms", "max ms", "kB", "< 1 ms | < 10 ms | < 100 ms | < 1 s | < 10 s | more"));
+
+		for (Phase phase : Phase.values()) {
+
+			Timer timer = timers[phase.ordinal()];
+			long count = timer.count.sum();
+
+			if (count == 0) {
+
+				continue;
+			}
+
+			double totalMillis = timer.nanos.sum() / 1e6;
+
+			result.append(String.format(Locale.ENGLISH, "%-20s %8d %12.1f %10.2f %10.1f %12d  ",
+					phase.getDisplayName(), count, totalMillis, totalMillis / count, timer.maximum.get() / 1e6, timer.bytes.sum() / 1024));
+
+			for (int index = 0; index < timer.histogram.length(); index++) {
+
+				result.append(index == 0 ? "" : " | ").append(timer.histogram.get(index));
+			}
+
+			result.append(String.format("%n"));
+		}
+
+		result.append(String.format(Locale.ENGLISH, "%-20s %8s %8s %8s%n", "cache", "hits", "misses", "hit rate"));
+
+		for (Cache cache : Cache.values()) {
+
+			long hitCount = hits[cache.ordinal()].sum();
+			long missCount = misses[cache.ordinal()].sum();
+
+			if (hitCount + missCount == 0) {
+
+				continue;
+			}
+
+			result.append(String.format(Locale.ENGLISH, "%-20s %8d %8d %7.1f%%%n",
+					cache.getDisplayName(), hitCount, missCount, 100.0 * hitCount / (hitCount + missCount)));
+		}
+
+		return result.toString();
+	}
+
+	private void writeJson(File file, long sessionNanos) throws IOException {
+
+		try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+
+			generator.useDefaultPrettyPrinter();
+			generator.writeStartObject();
+			generator.writeNumberField("sessionMillis", TimeUnit.NANOSECONDS.toMillis(sessionNanos));
+
+			generator.writeArrayFieldStart("histogramBoundsMillis");
+
+			for (long bound : BUCKET_BOUNDS) {
+
+				generator.writeNumber(bound);
+			}
+
+			generator.writeEndArray();
+
+			generator.writeObjectFieldStart("phases");
+
+			for (Phase phase : Phase.values()) {
+
+				Timer timer = timers[phase.ordinal()];
+
+				generator.writeObjectFieldStart(phase.getDisplayName());
+				generator.writeStringField("description", phase.getDescription());
+				generator.writeNumberField("count", timer.count.sum());
+				generator.writeNumberField("totalNanos", timer.nanos.sum());
+				generator.writeNumberField("maxNanos", timer.maximum.get());
+				generator.writeNumberField("bytes", timer.bytes.sum());
+				generator.writeArrayFieldStart("histogram");
+
+				for (int index = 0; index < timer.histogram.length(); index++) {
+
+					generator.writeNumber(timer.histogram.get(index));
+				}
+
+				generator.writeEndArray();
+				generator.writeEndObject();
+			}
+
+			generator.writeEndObject();
+
+			generator.writeObjectFieldStart("caches");
+
+			for (Cache cache : Cache.values()) {
+
+				generator.writeObjectFieldStart(cache.getDisplayName());
+				generator.writeStringField("description", cache.getDescription());
+				generator.writeNumberField("hits", hits[cache.ordinal()].sum());
+				generator.writeNumberField("misses", misses[cache.ordinal()].sum());
+				generator.writeEndObject();
+			}
+
+			generator.writeEndObject();
+			generator.writeEndObject();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package io.github.miracelwhipp.net.nuget.plugin;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class records the phases of the wagon as spans on the threads that ran them and writes them in the trace
+ * event format of chrome, so they can be viewed on a timeline, e.g. in chrome://tracing or https://ui.perfetto.dev.
+ * Every span is named after its phase and the artifact or package it concerns, so a package that kept the other
+ * threads waiting shows up as a long wait span with its name on each of them.
+ *
+ * @author miracelwhipp
+ */
+public class WagonTrace {
+
+	/**
+	 * This class holds a recorded span.
+	 */
+	private static final class Span {
+
+		private final WagonStatistics.Phase phase;
+		private final String artifact;
+		private final long threadId;
+		private final long start;
+		private final long end;
+		private final long bytes;
+
+		private Span(WagonStatistics.Phase phase, String artifact, long threadId, long start, long end, long bytes) {
+			this.phase = phase;
+			this.artifact = artifact;
+			this.threadId = threadId;
+			this.start = start;
+			this.end = end;
+			this.bytes = bytes;
+		}
+	}
+
+	private final long origin;
+
+	private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+	private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+	/**
+	 * @param origin the time in nanoseconds the trace starts at
+	 */
+	public WagonTrace(long origin) {
+		this.origin = origin;
+	}
+
+	/**
+	 * This method records a span of the current thread.
+	 *
+	 * @param phase    the phase
+	 * @param artifact the artifact or package the phase concerns or null
+	 * @param start    the start of the span in nanoseconds
+	 * @param end      the end of the span in nanoseconds
+	 * @param bytes    the bytes handled in the span
+	 */
+	public void add(WagonStatistics.Phase phase, String artifact, long start, long end, long bytes) {
+
+		Thread thread = Thread.currentThread();
+
+		if (!threadNames.containsKey(thread.getId())) {
+
+			threadNames.put(thread.getId(), thread.getName());
+		}
+
+		spans.add(new Span(phase, artifact, thread.getId(), start, end, bytes));
+	}
+
+	/**
+	 * This method writes the recorded spans.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+
+		try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+
+			generator.writeStartObject();
+			generator.writeStringField("displayTimeUnit", "ms");
+			generator.writeArrayFieldStart("traceEvents");
+
+			for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+
+				generator.writeStartObject();
+				generator.writeStringField("name", "thread_name");
+				generator.writeStringField("ph", "M");
+				generator.writeNumberField("pid", 1);
+				generator.writeNumberField("tid", thread.getKey());
+				generator.writeObjectFieldStart("args");
+				generator.writeStringField("name", thread.getValue());
+				generator.writeEndObject();
+				generator.writeEndObject();
+			}
+
+			for (Span span : spans) {
+
+				generator.writeStartObject();
+				generator.writeStringField("name", span.artifact == null ? span.phase.getDisplayName() : span.phase.getDisplayName() + " " + span.artifact);
+				generator.writeStringField("cat", span.phase.getDisplayName());
+				generator.writeStringField("ph", "X");
+				generator.writeNumberField("pid", 1);
+				generator.writeNumberField("tid", span.threadId);
+				generator.writeNumberField("ts", micros(span.start - origin));
+				generator.writeNumberField("dur", micros(span.end - span.start));
+				generator.writeObjectFieldStart("args");
+
+				if (span.artifact != null) {
+
+					generator.writeStringField("artifact", span.artifact);
+				}
+
+				if (span.bytes > 0) {
+
+					generator.writeNumberField("bytes", span.bytes);
+				}
+
+				generator.writeEndObject();
+				generator.writeEndObject();
+			}
+
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+	}
+
+	private static double micros(long nanos) {
+
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+}